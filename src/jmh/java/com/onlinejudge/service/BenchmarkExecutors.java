@@ -0,0 +1,48 @@
+package com.onlinejudge.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+
+/**
+ * Builds executor components outside Spring for the benchmarks, with the defaults from application.yml.
+ */
+final class BenchmarkExecutors {
+
+    private BenchmarkExecutors() {
+    }
+
+    /**
+     * @param compileCache Whether repeated compilations of the same source are served from the cache
+     */
+    static LocalCodeExecutor local(boolean compileCache) throws IOException {
+        CompilationCache cache = new CompilationCache();
+        ReflectionTestUtils.setField(cache, "enabled", compileCache);
+        ReflectionTestUtils.setField(cache, "cacheDir",
+                System.getProperty("java.io.tmpdir") + "/onlinejudge-bench-cache");
+        ReflectionTestUtils.setField(cache, "maxEntries", 500);
+        ReflectionTestUtils.setField(cache, "maxSizeMb", 256L);
+        cache.init();
+
+        ProcessStreamPump pump = new ProcessStreamPump(new SimpleMeterRegistry());
+        pump.init();
+
+        ResourceMonitor monitor = new ResourceMonitor();
+        ReflectionTestUtils.setField(monitor, "enabled", true);
+        ReflectionTestUtils.setField(monitor, "cgroupRoot", "");
+        ReflectionTestUtils.setField(monitor, "sampleIntervalMs", 10);
+        monitor.init();
+
+        WorkspaceManager workspaces = new WorkspaceManager(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(workspaces, "ramDisk", true);
+        ReflectionTestUtils.setField(workspaces, "dir", "");
+        ReflectionTestUtils.setField(workspaces, "poolSize", 16);
+        ReflectionTestUtils.setField(workspaces, "maxSizeMb", 1024L);
+        workspaces.init();
+
+        LocalCodeExecutor executor = new LocalCodeExecutor(cache, pump, monitor, workspaces);
+        ReflectionTestUtils.setField(executor, "wallTimeFactor", 3.0);
+        return executor;
+    }
+}
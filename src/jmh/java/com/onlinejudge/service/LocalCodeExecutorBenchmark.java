@@ -0,0 +1,72 @@
+package com.onlinejudge.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link LocalCodeExecutor#execute} end to end with a trivial program in every supported language:
+ * workspace creation, compilation, one run and cleanup. With {@code compileCache} the compiled
+ * program is restored from the cache after the first iteration, as for a resubmitted solution.
+ * Needs the same toolchains on the PATH as the local executor.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class LocalCodeExecutorBenchmark {
+
+    private static final Map<Integer, String> PROGRAMS = Map.of(
+            71, "print(int(input()) + 1)\n",
+            62, "import java.util.Scanner;\n"
+                    + "public class Main {\n"
+                    + "    public static void main(String[] args) {\n"
+                    + "        System.out.println(new Scanner(System.in).nextInt() + 1);\n"
+                    + "    }\n"
+                    + "}\n",
+            54, "#include <iostream>\n"
+                    + "int main() { int n; std::cin >> n; std::cout << n + 1 << std::endl; }\n",
+            63, "const n = parseInt(require('fs').readFileSync(0, 'utf8'));\n"
+                    + "console.log(n + 1);\n",
+            50, "#include <stdio.h>\n"
+                    + "int main() { int n; scanf(\"%d\", &n); printf(\"%d\\n\", n + 1); }\n"
+    );
+
+    /** Python, Java, C++, JavaScript, C */
+    @Param({"71", "62", "54", "63", "50"})
+    private int languageId;
+
+    @Param({"false", "true"})
+    private boolean compileCache;
+
+    private LocalCodeExecutor executor;
+
+    @Setup
+    public void setup() throws IOException {
+        executor = BenchmarkExecutors.local(compileCache);
+        CodeExecutor.ExecutionResult result = execute();
+        if (result.status != CodeExecutor.ExecutionResult.ResultStatus.SUCCESS || !"42".equals(result.stdout.trim())) {
+            throw new IllegalStateException("Language " + languageId + " is not runnable here: "
+                    + result.status + " " + result.stderr + (result.errorMessage != null ? result.errorMessage : ""));
+        }
+    }
+
+    @Benchmark
+    public CodeExecutor.ExecutionResult execute() {
+        return executor.execute(PROGRAMS.get(languageId), languageId, "41\n", 10_000, 262_144);
+    }
+}
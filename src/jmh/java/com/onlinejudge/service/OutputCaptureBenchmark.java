@@ -0,0 +1,52 @@
+package com.onlinejudge.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of draining a process stream into an {@link OutputCapture}, within and past the output limit.
+ * Reports the time per drained stream; divide the size by it for bytes per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OutputCaptureBenchmark {
+
+    // Matches CodeExecutor.DEFAULT_OUTPUT_LIMIT_KB
+    private static final long LIMIT_BYTES = 16L * 1024 * 1024;
+
+    @Param({"1", "16", "64"})
+    private int sizeMb;
+
+    private byte[] output;
+
+    @Setup
+    public void setup() {
+        output = new byte[sizeMb * 1024 * 1024];
+        Arrays.fill(output, (byte) 'x');
+        for (int i = 79; i < output.length; i += 80) {
+            output[i] = '\n';
+        }
+    }
+
+    @Benchmark
+    public OutputCapture drain() {
+        return OutputCapture.truncating(LIMIT_BYTES).drain(new ByteArrayInputStream(output));
+    }
+}
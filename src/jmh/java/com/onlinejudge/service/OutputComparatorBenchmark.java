@@ -0,0 +1,69 @@
+package com.onlinejudge.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Comparing a large accepted output against the expected output in each checker mode.
+ * The actual side differs from the expected one only in what the mode ignores (CRLF line endings,
+ * and for the token modes extra spaces), so every comparison reads both outputs to the end.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OutputComparatorBenchmark {
+
+    @Param({"1", "16"})
+    private int sizeMb;
+
+    @Param({"NORMALIZED", "EXACT", "TOKENS", "FLOAT"})
+    private OutputComparator.Mode mode;
+
+    private byte[] actual;
+    private byte[] expected;
+
+    @Setup
+    public void setup() throws IOException {
+        StringBuilder want = new StringBuilder();
+        StringBuilder got = new StringBuilder();
+        Random random = new Random(42);
+        while (want.length() < sizeMb * 1024 * 1024) {
+            String line = random.nextInt(1_000_000) + " " + String.format("%.6f", random.nextDouble());
+            want.append(line).append('\n');
+            got.append(line).append(switch (mode) {
+                case EXACT -> "\n";
+                case NORMALIZED -> "\r\n";
+                case TOKENS, FLOAT -> "  \r\n";
+            });
+        }
+        expected = want.toString().getBytes(StandardCharsets.UTF_8);
+        actual = got.toString().getBytes(StandardCharsets.UTF_8);
+        if (!compare().matches()) {
+            throw new IllegalStateException("Fixture does not match in " + mode + " mode");
+        }
+    }
+
+    @Benchmark
+    public OutputComparator.Result compare() throws IOException {
+        return OutputComparator.compare(new ByteArrayInputStream(actual), new ByteArrayInputStream(expected),
+                mode, 1e-6);
+    }
+}
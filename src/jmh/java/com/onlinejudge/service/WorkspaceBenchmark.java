@@ -0,0 +1,45 @@
+package com.onlinejudge.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Setting up and tearing down a workspace: {@link LocalCodeExecutor#compile} of an interpreted
+ * language only takes a pooled directory and writes the source, and closing the handle empties it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WorkspaceBenchmark {
+
+    private static final int PYTHON = 71;
+    private static final String SOURCE = "print(int(input()) + 1)\n";
+
+    private LocalCodeExecutor executor;
+
+    @Setup
+    public void setup() throws IOException {
+        executor = BenchmarkExecutors.local(false);
+    }
+
+    @Benchmark
+    public boolean createAndDelete() {
+        try (CodeExecutor.CompiledProgram program = executor.compile(SOURCE, PYTHON)) {
+            return program.isSuccessful();
+        }
+    }
+}
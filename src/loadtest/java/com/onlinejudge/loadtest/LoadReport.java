@@ -0,0 +1,142 @@
+package com.onlinejudge.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Outcomes of the submissions made after warm-up, summarized as throughput, judge latency
+ * percentiles and error rates.
+ */
+final class LoadReport {
+
+    enum Outcome {
+        /** Judged with the verdict the program was written to get. */
+        OK,
+        /** Judged, but with a different verdict (including INTERNAL_ERROR). */
+        UNEXPECTED_VERDICT,
+        /** The API answered 503 because the judge queue was full. */
+        REJECTED,
+        /** Any other failed request. */
+        HTTP_ERROR,
+        /** No verdict within the timeout. */
+        TIMEOUT
+    }
+
+    /**
+     * @param startNanos When the submission was due (open loop) or sent (closed loop)
+     * @param latencyNanos From start until the verdict arrived; 0 if there was none
+     */
+    record Sample(String label, Outcome outcome, long startNanos, long endNanos, long latencyNanos) {
+    }
+
+    private final List<Sample> samples = new ArrayList<>();
+
+    synchronized void add(Sample sample) {
+        samples.add(sample);
+    }
+
+    /**
+     * @param windowStartNanos End of warm-up; earlier submissions are not counted
+     * @param windowEndNanos When the generator stopped submitting
+     */
+    synchronized Map<String, Object> summarize(long windowStartNanos, long windowEndNanos) {
+        List<Sample> measured = samples.stream().filter(s -> s.startNanos() >= windowStartNanos).toList();
+        double windowMinutes = (windowEndNanos - windowStartNanos) / 60e9;
+        long judgedInWindow = samples.stream()
+                .filter(s -> s.latencyNanos() > 0 && s.endNanos() >= windowStartNanos && s.endNanos() <= windowEndNanos)
+                .count();
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("submissions", measured.size());
+        summary.put("judgedPerMinute", round(judgedInWindow / windowMinutes));
+        summary.put("outcomes", outcomes(measured));
+        summary.put("errorRate", round(errorRate(measured)));
+        summary.put("latencyMs", latencies(measured));
+
+        Map<String, Object> byLabel = new TreeMap<>();
+        measured.stream().map(Sample::label).distinct().forEach(label -> {
+            List<Sample> group = measured.stream().filter(s -> s.label().equals(label)).toList();
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("submissions", group.size());
+            entry.put("errorRate", round(errorRate(group)));
+            entry.put("latencyMs", latencies(group));
+            byLabel.put(label, entry);
+        });
+        summary.put("byLanguageAndKind", byLabel);
+        return summary;
+    }
+
+    static void print(Map<String, Object> summary) {
+        System.out.printf("%nSubmissions: %s, judged/min: %s, error rate: %s%n",
+                summary.get("submissions"), summary.get("judgedPerMinute"), summary.get("errorRate"));
+        System.out.println("Outcomes: " + summary.get("outcomes"));
+        System.out.println("Judge latency (ms): " + summary.get("latencyMs"));
+        System.out.printf("%n%-16s %8s %8s %10s %10s %10s%n", "language/kind", "count", "errors", "p50", "p95", "p99");
+        @SuppressWarnings("unchecked")
+        Map<String, Map<String, Object>> byLabel = (Map<String, Map<String, Object>>) summary.get("byLanguageAndKind");
+        byLabel.forEach((label, entry) -> {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> latency = (Map<String, Object>) entry.get("latencyMs");
+            System.out.printf("%-16s %8s %8s %10s %10s %10s%n", label, entry.get("submissions"), entry.get("errorRate"),
+                    latency.get("p50"), latency.get("p95"), latency.get("p99"));
+        });
+    }
+
+    static void write(Map<String, Object> result, Path file) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(file.toFile(), result);
+    }
+
+    private static Map<String, Long> outcomes(List<Sample> samples) {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (Outcome outcome : Outcome.values()) {
+            counts.put(outcome.name(), samples.stream().filter(s -> s.outcome() == outcome).count());
+        }
+        return counts;
+    }
+
+    private static double errorRate(List<Sample> samples) {
+        if (samples.isEmpty()) {
+            return 0;
+        }
+        return (double) samples.stream().filter(s -> s.outcome() != Outcome.OK).count() / samples.size();
+    }
+
+    private static Map<String, Object> latencies(List<Sample> samples) {
+        // Only judged submissions have a judge latency; rejected and failed requests are in the error rate
+        long[] sorted = samples.stream().mapToLong(Sample::latencyNanos).filter(n -> n > 0).sorted().toArray();
+        Map<String, Object> latency = new LinkedHashMap<>();
+        latency.put("count", sorted.length);
+        latency.put("p50", percentile(sorted, 0.50));
+        latency.put("p95", percentile(sorted, 0.95));
+        latency.put("p99", percentile(sorted, 0.99));
+        latency.put("max", sorted.length > 0 ? round(sorted[sorted.length - 1] / 1e6) : null);
+        latency.put("mean", sorted.length > 0 ? round(Arrays.stream(sorted).average().orElse(0) / 1e6) : null);
+        return latency;
+    }
+
+    private static Double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return null;
+        }
+        // Nearest rank
+        int rank = (int) Math.ceil(p * sorted.length);
+        return round(sorted[Math.max(0, rank - 1)] / 1e6);
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+}
@@ -0,0 +1,308 @@
+package com.onlinejudge.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.onlinejudge.OnlineJudgeApplication;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Replays a synthetic contest against the submissions API and reports how many submissions per minute
+ * the judge sustains, the judge latency (submission to verdict) percentiles and the error rates.
+ *
+ * Without {@code --target} the application is started in this JVM with the local executor and the
+ * sample problems, so a run needs nothing but the toolchains; every submission goes to "Two Sum".
+ * Options (all {@code --name=value}):
+ * <ul>
+ *   <li>{@code target} - base URL of a running judge, e.g. http://localhost:8081</li>
+ *   <li>{@code duration}, {@code warmup} - seconds of load, and how many of them are not measured (60, 10)</li>
+ *   <li>{@code rate} - open loop: submissions per minute, regardless of how fast verdicts come back</li>
+ *   <li>{@code concurrency} - closed loop (default 8): clients that each wait for a verdict before submitting again</li>
+ *   <li>{@code languages} - weighted language ids (71:4,50:2,54:2,62:1,63:1)</li>
+ *   <li>{@code mix} - weighted expected verdicts AC, WA, TLE, CE (AC:80,WA:10,TLE:5,CE:5)</li>
+ *   <li>{@code unique-sources} - tag each source so it misses the compile cache (true)</li>
+ *   <li>{@code timeout} - seconds to wait for a verdict (120)</li>
+ *   <li>{@code out} - JSON results file (target/loadtest-result.json)</li>
+ * </ul>
+ * Any other option is passed on to the embedded application, e.g. {@code --judge.queue.workers=4}.
+ */
+public final class LoadTest {
+
+    private static final String PROBLEM_TITLE = "Two Sum";
+
+    private final Map<String, String> options;
+    private final HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+    private final ObjectMapper json = new ObjectMapper();
+    private final LoadReport report = new LoadReport();
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final NavigableMap<Integer, Integer> languages;
+    private final NavigableMap<Integer, Programs.Kind> kinds;
+    private final boolean uniqueSources;
+    private final Duration timeout;
+
+    private String baseUrl;
+    private long problemId;
+
+    private LoadTest(Map<String, String> options) {
+        this.options = options;
+        this.languages = weighted(option("languages", "71:4,50:2,54:2,62:1,63:1"), Integer::valueOf);
+        this.kinds = weighted(option("mix", "AC:80,WA:10,TLE:5,CE:5"), Programs.Kind::valueOf);
+        this.uniqueSources = Boolean.parseBoolean(option("unique-sources", "true"));
+        this.timeout = Duration.ofSeconds(Long.parseLong(option("timeout", "120")));
+        for (int languageId : languages.values()) {
+            if (!Programs.supports(languageId)) {
+                throw new IllegalArgumentException("Unsupported language ID: " + languageId);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        new LoadTest(options).run();
+    }
+
+    private void run() throws Exception {
+        ConfigurableApplicationContext app = null;
+        try {
+            if (options.containsKey("target")) {
+                baseUrl = options.get("target").replaceAll("/+$", "");
+            } else {
+                app = startApplication();
+                baseUrl = "http://localhost:" + app.getEnvironment().getProperty("local.server.port");
+            }
+            problemId = findProblem();
+
+            long durationNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(option("duration", "60")));
+            long warmupNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(option("warmup", "10")));
+            int rate = Integer.parseInt(option("rate", "0"));
+            int concurrency = Integer.parseInt(option("concurrency", "8"));
+
+            long start = System.nanoTime();
+            long end = start + durationNanos;
+            System.out.printf("Load test against %s: %s for %ds (%ds warm-up), languages %s, mix %s%n", baseUrl,
+                    rate > 0 ? rate + " submissions/min (open loop)" : concurrency + " clients (closed loop)",
+                    TimeUnit.NANOSECONDS.toSeconds(durationNanos), TimeUnit.NANOSECONDS.toSeconds(warmupNanos),
+                    languages.values(), kinds.values());
+            if (rate > 0) {
+                openLoop(rate, start, end);
+            } else {
+                closedLoop(concurrency, end);
+            }
+
+            Map<String, Object> summary = report.summarize(start + warmupNanos, end);
+            LoadReport.print(summary);
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("options", options);
+            result.put("summary", summary);
+            Path out = Path.of(option("out", "target/loadtest-result.json"));
+            LoadReport.write(result, out);
+            System.out.println("\nResults written to " + out.toAbsolutePath());
+        } finally {
+            if (app != null) {
+                app.close();
+            }
+        }
+    }
+
+    private ConfigurableApplicationContext startApplication() {
+        List<String> args = new ArrayList<>(List.of(
+                "--server.port=0", "--executor.mode=local", "--logging.level.root=WARN"));
+        options.forEach((name, value) -> {
+            if (!isLoadTestOption(name)) {
+                args.add("--" + name + "=" + value);
+            }
+        });
+        return SpringApplication.run(OnlineJudgeApplication.class, args.toArray(String[]::new));
+    }
+
+    /**
+     * Submit at a fixed rate. Latency counts from when a submission was due, so a generator
+     * that falls behind does not hide the delay.
+     */
+    private void openLoop(int perMinute, long start, long end) throws InterruptedException {
+        long intervalNanos = TimeUnit.MINUTES.toNanos(1) / perMinute;
+        ExecutorService clients = Executors.newCachedThreadPool();
+        for (long due = start; due < end; due += intervalNanos) {
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+            long scheduled = due;
+            clients.execute(() -> submitAndWait(scheduled));
+        }
+        clients.shutdown();
+        clients.awaitTermination(timeout.toSeconds() + 30, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Each client submits, waits for the verdict, and submits again until the end.
+     */
+    private void closedLoop(int concurrency, long end) throws InterruptedException {
+        ExecutorService clients = Executors.newFixedThreadPool(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            clients.execute(() -> {
+                while (System.nanoTime() < end) {
+                    submitAndWait(System.nanoTime());
+                }
+            });
+        }
+        clients.shutdown();
+        clients.awaitTermination(timeout.toSeconds() + 30, TimeUnit.SECONDS);
+    }
+
+    private void submitAndWait(long startNanos) {
+        int languageId = pick(languages);
+        Programs.Kind kind = pick(kinds);
+        String label = languageId + "/" + kind;
+        String tag = uniqueSources ? "load test " + sequence.incrementAndGet() : null;
+
+        LoadReport.Outcome outcome;
+        long latency = 0;
+        try {
+            Map<String, Object> body = Map.of("problemId", problemId, "languageId", languageId,
+                    "sourceCode", Programs.source(languageId, kind, tag));
+            HttpResponse<String> response = http.send(HttpRequest.newBuilder(URI.create(baseUrl + "/api/submissions"))
+                            .header("Content-Type", "application/json")
+                            .timeout(timeout)
+                            .POST(HttpRequest.BodyPublishers.ofString(json.writeValueAsString(body)))
+                            .build(),
+                    HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() == 503) {
+                outcome = LoadReport.Outcome.REJECTED;
+            } else if (response.statusCode() / 100 != 2) {
+                outcome = LoadReport.Outcome.HTTP_ERROR;
+            } else {
+                String verdict = awaitVerdict(json.readTree(response.body()).get("id").asLong());
+                if (verdict == null) {
+                    outcome = LoadReport.Outcome.TIMEOUT;
+                } else {
+                    latency = System.nanoTime() - startNanos;
+                    outcome = verdict.equals(Programs.expectedVerdict(languageId, kind))
+                            ? LoadReport.Outcome.OK : LoadReport.Outcome.UNEXPECTED_VERDICT;
+                }
+            }
+        } catch (HttpTimeoutException e) {
+            outcome = LoadReport.Outcome.TIMEOUT;
+        } catch (IOException e) {
+            outcome = LoadReport.Outcome.HTTP_ERROR;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        report.add(new LoadReport.Sample(label, outcome, startNanos, System.nanoTime(), latency));
+    }
+
+    /**
+     * Follow the submission's event stream until the verdict event, as the web UI does.
+     *
+     * @return The verdict, or null if the stream ended without one
+     */
+    private String awaitVerdict(long submissionId) throws IOException, InterruptedException {
+        HttpResponse<Stream<String>> response = http.send(
+                HttpRequest.newBuilder(URI.create(baseUrl + "/api/submissions/" + submissionId + "/events"))
+                        .header("Accept", "text/event-stream")
+                        .timeout(timeout)
+                        .GET()
+                        .build(),
+                HttpResponse.BodyHandlers.ofLines());
+        if (response.statusCode() != 200) {
+            throw new IOException("Event stream of submission " + submissionId + " answered " + response.statusCode());
+        }
+        try (Stream<String> lines = response.body()) {
+            Iterator<String> it = lines.iterator();
+            boolean verdictEvent = false;
+            while (it.hasNext()) {
+                String line = it.next();
+                if (line.startsWith("event:")) {
+                    verdictEvent = line.substring(6).trim().equals("verdict");
+                } else if (verdictEvent && line.startsWith("data:")) {
+                    return json.readTree(line.substring(5)).get("verdict").asText();
+                }
+            }
+            return null;
+        } catch (UncheckedIOException e) {
+            // The line stream wraps read errors, including the request timeout
+            if (e.getCause() instanceof HttpTimeoutException) {
+                return null;
+            }
+            throw e.getCause();
+        }
+    }
+
+    private long findProblem() throws IOException, InterruptedException {
+        HttpResponse<InputStream> response = http.send(
+                HttpRequest.newBuilder(URI.create(baseUrl + "/api/problems")).GET().build(),
+                HttpResponse.BodyHandlers.ofInputStream());
+        for (JsonNode problem : json.readTree(response.body())) {
+            if (PROBLEM_TITLE.equals(problem.get("title").asText())) {
+                return problem.get("id").asLong();
+            }
+        }
+        throw new IllegalStateException("Sample problem \"" + PROBLEM_TITLE + "\" not found at " + baseUrl);
+    }
+
+    private String option(String name, String defaultValue) {
+        return options.getOrDefault(name, defaultValue);
+    }
+
+    private static boolean isLoadTestOption(String name) {
+        return List.of("target", "duration", "warmup", "rate", "concurrency", "languages", "mix",
+                "unique-sources", "timeout", "out").contains(name);
+    }
+
+    /**
+     * Parse "key:weight,..." into cumulative weights for {@link #pick}.
+     */
+    private static <T> NavigableMap<Integer, T> weighted(String spec, Function<String, T> parse) {
+        NavigableMap<Integer, T> cumulative = new TreeMap<>();
+        int total = 0;
+        for (String part : spec.split(",")) {
+            String[] pair = part.trim().split(":");
+            int weight = pair.length > 1 ? Integer.parseInt(pair[1]) : 1;
+            if (weight > 0) {
+                total += weight;
+                cumulative.put(total, parse.apply(pair[0]));
+            }
+        }
+        if (cumulative.isEmpty()) {
+            throw new IllegalArgumentException("No positive weights in " + spec);
+        }
+        return cumulative;
+    }
+
+    private static <T> T pick(NavigableMap<Integer, T> cumulative) {
+        return cumulative.higherEntry(ThreadLocalRandom.current().nextInt(cumulative.lastKey())).getValue();
+    }
+}
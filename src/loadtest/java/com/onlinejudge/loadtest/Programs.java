@@ -0,0 +1,106 @@
+package com.onlinejudge.loadtest;
+
+import java.util.Map;
+
+/**
+ * Solutions to the "Two Sum" sample problem that end in a known verdict, per language.
+ */
+final class Programs {
+
+    enum Kind {
+        AC, WA, TLE, CE
+    }
+
+    // Python and JavaScript have no compile step, so their syntax errors surface when the program runs
+    private static final Map<Integer, Boolean> COMPILED = Map.of(71, false, 62, true, 54, true, 63, false, 50, true);
+
+    private static final Map<Integer, Map<Kind, String>> SOURCES = Map.of(
+            71, Map.of(
+                    Kind.AC, "a, b = map(int, input().split())\nprint(a + b)\n",
+                    Kind.WA, "a, b = map(int, input().split())\nprint(a + b + 1)\n",
+                    Kind.TLE, "while True:\n    pass\n",
+                    Kind.CE, "print(\n"),
+            62, Map.of(
+                    Kind.AC, java("System.out.println(in.nextInt() + in.nextInt());"),
+                    Kind.WA, java("System.out.println(in.nextInt() + in.nextInt() + 1);"),
+                    Kind.TLE, java("while (true) { }"),
+                    Kind.CE, java("System.out.println(in.nextInt() + in.nextInt())")),
+            54, Map.of(
+                    Kind.AC, cpp("std::cout << a + b << std::endl;"),
+                    Kind.WA, cpp("std::cout << a + b + 1 << std::endl;"),
+                    Kind.TLE, cpp("for (volatile int i = 0; ; i++) { }"),
+                    Kind.CE, cpp("std::cout << a + b << std::endl")),
+            63, Map.of(
+                    Kind.AC, js("console.log(a + b);"),
+                    Kind.WA, js("console.log(a + b + 1);"),
+                    Kind.TLE, js("for (;;) { }"),
+                    Kind.CE, js("console.log(a + b;")),
+            50, Map.of(
+                    Kind.AC, c("printf(\"%d\\n\", a + b);"),
+                    Kind.WA, c("printf(\"%d\\n\", a + b + 1);"),
+                    Kind.TLE, c("for (volatile int i = 0; ; i++) { }"),
+                    Kind.CE, c("printf(\"%d\\n\", a + b)"))
+    );
+
+    private Programs() {
+    }
+
+    static boolean supports(int languageId) {
+        return SOURCES.containsKey(languageId);
+    }
+
+    /**
+     * @param tag Appended as a comment so each submission is compiled afresh instead of hitting the compile cache;
+     *            null to send identical sources
+     */
+    static String source(int languageId, Kind kind, String tag) {
+        String source = SOURCES.get(languageId).get(kind);
+        if (tag == null) {
+            return source;
+        }
+        return source + (languageId == 71 ? "# " : "// ") + tag + "\n";
+    }
+
+    static String expectedVerdict(int languageId, Kind kind) {
+        return switch (kind) {
+            case AC -> "ACCEPTED";
+            case WA -> "WRONG_ANSWER";
+            case TLE -> "TIME_LIMIT_EXCEEDED";
+            case CE -> COMPILED.get(languageId) ? "COMPILATION_ERROR" : "RUNTIME_ERROR";
+        };
+    }
+
+    private static String java(String body) {
+        return "import java.util.Scanner;\n"
+                + "public class Main {\n"
+                + "    public static void main(String[] args) {\n"
+                + "        Scanner in = new Scanner(System.in);\n"
+                + "        " + body + "\n"
+                + "    }\n"
+                + "}\n";
+    }
+
+    private static String cpp(String body) {
+        return "#include <iostream>\n"
+                + "int main() {\n"
+                + "    int a, b;\n"
+                + "    std::cin >> a >> b;\n"
+                + "    " + body + "\n"
+                + "}\n";
+    }
+
+    private static String js(String body) {
+        return "const [a, b] = require('fs').readFileSync(0, 'utf8').trim().split(/\\s+/).map(Number);\n"
+                + body + "\n";
+    }
+
+    private static String c(String body) {
+        return "#include <stdio.h>\n"
+                + "int main() {\n"
+                + "    int a, b;\n"
+                + "    scanf(\"%d %d\", &a, &b);\n"
+                + "    " + body + "\n"
+                + "    return 0;\n"
+                + "}\n";
+    }
+}
@@ -3,22 +3,29 @@ package com.onlinejudge.config;
 import com.onlinejudge.model.Problem;
 import com.onlinejudge.model.TestCase;
 import com.onlinejudge.repository.ProblemRepository;
-import com.onlinejudge.repository.TestCaseRepository;
+import com.onlinejudge.service.ProblemService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 
 @Component
 @RequiredArgsConstructor
 @Slf4j
+@ConditionalOnProperty(name = "judge.sample-data.enabled", havingValue = "true", matchIfMissing = true)
 public class DataInitializer implements CommandLineRunner {
 
     private final ProblemRepository problemRepository;
-    private final TestCaseRepository testCaseRepository;
+    private final ProblemService problemService;
 
     @Override
     public void run(String... args) {
+        // A persistent database keeps the problems from the previous start
+        if (problemRepository.count() > 0) {
+            log.info("Found {} problems, skipping sample data", problemRepository.count());
+            return;
+        }
         log.info("Initializing sample problems...");
 
         // Problem 1: Two Sum
@@ -49,32 +56,28 @@ public class DataInitializer implements CommandLineRunner {
                 .memoryLimit(128000)
                 .build());
 
-        testCaseRepository.save(TestCase.builder()
-                .problemId(twoSum.getId())
+        problemService.addTestCase(twoSum.getId(), TestCase.builder()
                 .input("3 5")
                 .expectedOutput("8")
                 .isHidden(false)
                 .orderIndex(0)
                 .build());
 
-        testCaseRepository.save(TestCase.builder()
-                .problemId(twoSum.getId())
+        problemService.addTestCase(twoSum.getId(), TestCase.builder()
                 .input("-10 20")
                 .expectedOutput("10")
                 .isHidden(false)
                 .orderIndex(1)
                 .build());
 
-        testCaseRepository.save(TestCase.builder()
-                .problemId(twoSum.getId())
+        problemService.addTestCase(twoSum.getId(), TestCase.builder()
                 .input("0 0")
                 .expectedOutput("0")
                 .isHidden(true)
                 .orderIndex(2)
                 .build());
 
-        testCaseRepository.save(TestCase.builder()
-                .problemId(twoSum.getId())
+        problemService.addTestCase(twoSum.getId(), TestCase.builder()
                 .input("-500 500")
                 .expectedOutput("0")
                 .isHidden(true)
@@ -109,32 +112,28 @@ public class DataInitializer implements CommandLineRunner {
                 .memoryLimit(128000)
                 .build());
 
-        testCaseRepository.save(TestCase.builder()
-                .problemId(palindrome.getId())
+        problemService.addTestCase(palindrome.getId(), TestCase.builder()
                 .input("racecar")
                 .expectedOutput("YES")
                 .isHidden(false)
                 .orderIndex(0)
                 .build());
 
-        testCaseRepository.save(TestCase.builder()
-                .problemId(palindrome.getId())
+        problemService.addTestCase(palindrome.getId(), TestCase.builder()
                 .input("hello")
                 .expectedOutput("NO")
                 .isHidden(false)
                 .orderIndex(1)
                 .build());
 
-        testCaseRepository.save(TestCase.builder()
-                .problemId(palindrome.getId())
+        problemService.addTestCase(palindrome.getId(), TestCase.builder()
                 .input("a")
                 .expectedOutput("YES")
                 .isHidden(true)
                 .orderIndex(2)
                 .build());
 
-        testCaseRepository.save(TestCase.builder()
-                .problemId(palindrome.getId())
+        problemService.addTestCase(palindrome.getId(), TestCase.builder()
                 .input("abba")
                 .expectedOutput("YES")
                 .isHidden(true)
@@ -173,40 +172,35 @@ public class DataInitializer implements CommandLineRunner {
                 .memoryLimit(128000)
                 .build());
 
-        testCaseRepository.save(TestCase.builder()
-                .problemId(fizzBuzz.getId())
+        problemService.addTestCase(fizzBuzz.getId(), TestCase.builder()
                 .input("15")
                 .expectedOutput("FizzBuzz")
                 .isHidden(false)
                 .orderIndex(0)
                 .build());
 
-        testCaseRepository.save(TestCase.builder()
-                .problemId(fizzBuzz.getId())
+        problemService.addTestCase(fizzBuzz.getId(), TestCase.builder()
                 .input("9")
                 .expectedOutput("Fizz")
                 .isHidden(false)
                 .orderIndex(1)
                 .build());
 
-        testCaseRepository.save(TestCase.builder()
-                .problemId(fizzBuzz.getId())
+        problemService.addTestCase(fizzBuzz.getId(), TestCase.builder()
                 .input("10")
                 .expectedOutput("Buzz")
                 .isHidden(false)
                 .orderIndex(2)
                 .build());
 
-        testCaseRepository.save(TestCase.builder()
-                .problemId(fizzBuzz.getId())
+        problemService.addTestCase(fizzBuzz.getId(), TestCase.builder()
                 .input("7")
                 .expectedOutput("7")
                 .isHidden(true)
                 .orderIndex(3)
                 .build());
 
-        testCaseRepository.save(TestCase.builder()
-                .problemId(fizzBuzz.getId())
+        problemService.addTestCase(fizzBuzz.getId(), TestCase.builder()
                 .input("30")
                 .expectedOutput("FizzBuzz")
                 .isHidden(true)
@@ -247,32 +241,28 @@ public class DataInitializer implements CommandLineRunner {
                 .memoryLimit(128000)
                 .build());
 
-        testCaseRepository.save(TestCase.builder()
-                .problemId(factorial.getId())
+        problemService.addTestCase(factorial.getId(), TestCase.builder()
                 .input("5")
                 .expectedOutput("120")
                 .isHidden(false)
                 .orderIndex(0)
                 .build());
 
-        testCaseRepository.save(TestCase.builder()
-                .problemId(factorial.getId())
+        problemService.addTestCase(factorial.getId(), TestCase.builder()
                 .input("0")
                 .expectedOutput("1")
                 .isHidden(false)
                 .orderIndex(1)
                 .build());
 
-        testCaseRepository.save(TestCase.builder()
-                .problemId(factorial.getId())
+        problemService.addTestCase(factorial.getId(), TestCase.builder()
                 .input("10")
                 .expectedOutput("3628800")
                 .isHidden(true)
                 .orderIndex(2)
                 .build());
 
-        testCaseRepository.save(TestCase.builder()
-                .problemId(factorial.getId())
+        problemService.addTestCase(factorial.getId(), TestCase.builder()
                 .input("12")
                 .expectedOutput("479001600")
                 .isHidden(true)
@@ -309,40 +299,35 @@ public class DataInitializer implements CommandLineRunner {
                 .memoryLimit(128000)
                 .build());
 
-        testCaseRepository.save(TestCase.builder()
-                .problemId(primeCheck.getId())
+        problemService.addTestCase(primeCheck.getId(), TestCase.builder()
                 .input("17")
                 .expectedOutput("YES")
                 .isHidden(false)
                 .orderIndex(0)
                 .build());
 
-        testCaseRepository.save(TestCase.builder()
-                .problemId(primeCheck.getId())
+        problemService.addTestCase(primeCheck.getId(), TestCase.builder()
                 .input("1")
                 .expectedOutput("NO")
                 .isHidden(false)
                 .orderIndex(1)
                 .build());
 
-        testCaseRepository.save(TestCase.builder()
-                .problemId(primeCheck.getId())
+        problemService.addTestCase(primeCheck.getId(), TestCase.builder()
                 .input("2")
                 .expectedOutput("YES")
                 .isHidden(false)
                 .orderIndex(2)
                 .build());
 
-        testCaseRepository.save(TestCase.builder()
-                .problemId(primeCheck.getId())
+        problemService.addTestCase(primeCheck.getId(), TestCase.builder()
                 .input("999983")
                 .expectedOutput("YES")
                 .isHidden(true)
                 .orderIndex(3)
                 .build());
 
-        testCaseRepository.save(TestCase.builder()
-                .problemId(primeCheck.getId())
+        problemService.addTestCase(primeCheck.getId(), TestCase.builder()
                 .input("100")
                 .expectedOutput("NO")
                 .isHidden(true)
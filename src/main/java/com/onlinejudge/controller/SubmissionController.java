@@ -1,12 +1,17 @@
 package com.onlinejudge.controller;
 
+import com.onlinejudge.dto.SubmissionPage;
 import com.onlinejudge.dto.SubmissionRequest;
 import com.onlinejudge.dto.SubmissionResponse;
+import com.onlinejudge.dto.SubmissionSummary;
 import com.onlinejudge.service.JudgeService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
 
 import java.util.List;
 
@@ -20,7 +25,8 @@ public class SubmissionController {
 
     @PostMapping
     public ResponseEntity<SubmissionResponse> submitCode(@Valid @RequestBody SubmissionRequest request) {
-        return ResponseEntity.ok(judgeService.submitCode(request));
+        // Judging happens asynchronously; poll GET /api/submissions/{id} for the verdict
+        return ResponseEntity.accepted().body(judgeService.submitCode(request));
     }
 
     @GetMapping("/{id}")
@@ -28,13 +34,28 @@ public class SubmissionController {
         return ResponseEntity.ok(judgeService.getSubmission(id));
     }
 
+    // Judge a finished submission again, behind new contest and practice submissions
+    @PostMapping("/{id}/rejudge")
+    public ResponseEntity<SubmissionResponse> rejudge(@PathVariable Long id) {
+        return ResponseEntity.accepted().body(judgeService.rejudge(id));
+    }
+
+    // Judging progress as Server-Sent Events; ends with a "verdict" event
+    @GetMapping(value = "/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Object>> getSubmissionEvents(@PathVariable Long id) {
+        return judgeService.getSubmissionEvents(id);
+    }
+
+    // Newest first; follow nextCursor for older submissions
     @GetMapping("/problem/{problemId}")
-    public ResponseEntity<List<SubmissionResponse>> getSubmissionsForProblem(@PathVariable Long problemId) {
-        return ResponseEntity.ok(judgeService.getSubmissionsForProblem(problemId));
+    public ResponseEntity<SubmissionPage> getSubmissionsForProblem(@PathVariable Long problemId,
+                                                                   @RequestParam(required = false) String cursor,
+                                                                   @RequestParam(defaultValue = "20") int limit) {
+        return ResponseEntity.ok(judgeService.getSubmissionsForProblem(problemId, cursor, limit));
     }
 
     @GetMapping("/recent")
-    public ResponseEntity<List<SubmissionResponse>> getRecentSubmissions() {
+    public ResponseEntity<List<SubmissionSummary>> getRecentSubmissions() {
         return ResponseEntity.ok(judgeService.getRecentSubmissions());
     }
 }
@@ -1,6 +1,7 @@
 package com.onlinejudge.dto;
 
 import com.onlinejudge.model.Problem;
+import com.onlinejudge.model.Submission;
 import com.onlinejudge.model.TestCase;
 import lombok.Builder;
 import lombok.Data;
@@ -17,6 +18,9 @@ public class ProblemResponse {
     private Problem.Difficulty difficulty;
     private Integer timeLimit;
     private Integer memoryLimit;
+    private Integer outputLimit;
+    private Problem.CheckerType checkerType;
+    private Submission.JudgeMode judgeMode;
     private LocalDateTime createdAt;
     private List<SampleTestCase> sampleTestCases;
 
@@ -35,6 +39,9 @@ public class ProblemResponse {
                 .difficulty(problem.getDifficulty())
                 .timeLimit(problem.getTimeLimit())
                 .memoryLimit(problem.getMemoryLimit())
+                .outputLimit(problem.getOutputLimit())
+                .checkerType(problem.getCheckerType())
+                .judgeMode(problem.getJudgeMode())
                 .createdAt(problem.getCreatedAt())
                 .sampleTestCases(visibleTestCases.stream()
                         .map(tc -> SampleTestCase.builder()
@@ -0,0 +1,17 @@
+package com.onlinejudge.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * One page of a submission listing, newest first.
+ * Pass {@code nextCursor} back as {@code cursor} to get the following page; it is null on the last page.
+ */
+@Data
+@Builder
+public class SubmissionPage {
+    private List<SubmissionSummary> submissions;
+    private String nextCursor;
+}
@@ -1,5 +1,6 @@
 package com.onlinejudge.dto;
 
+import com.onlinejudge.model.Submission;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import lombok.Data;
@@ -15,4 +16,10 @@ public class SubmissionRequest {
     
     @NotBlank(message = "Source code is required")
     private String sourceCode;
+
+    // Optional; defaults to the problem's judge mode
+    private Submission.JudgeMode judgeMode;
+
+    // Optional; CONTEST submissions are judged ahead of PRACTICE ones (the default)
+    private Submission.Lane lane;
 }
@@ -1,6 +1,7 @@
 package com.onlinejudge.dto;
 
 import com.onlinejudge.model.Submission;
+import com.onlinejudge.model.SubmissionTestResult;
 import lombok.Builder;
 import lombok.Data;
 
@@ -16,6 +17,8 @@ public class SubmissionResponse {
     private Integer languageId;
     private String languageName;
     private Submission.Verdict verdict;
+    private Submission.JudgeMode judgeMode;
+    private Submission.Lane lane;
     private Double executionTime;
     private Integer memoryUsed;
     private String output;
@@ -31,8 +34,22 @@ public class SubmissionResponse {
         private boolean passed;
         private String actualOutput;
         private String expectedOutput;
+        private String message;
         private Double executionTime;
         private Integer memoryUsed;
         private boolean hidden;
+
+        public static TestCaseResult from(SubmissionTestResult result) {
+            return TestCaseResult.builder()
+                    .testCaseNumber(result.getTestCaseNumber())
+                    .passed(Boolean.TRUE.equals(result.getPassed()))
+                    .actualOutput(result.getActualOutput())
+                    .expectedOutput(result.getExpectedOutput())
+                    .message(result.getMessage())
+                    .executionTime(result.getExecutionTime())
+                    .memoryUsed(result.getMemoryUsed())
+                    .hidden(Boolean.TRUE.equals(result.getHidden()))
+                    .build();
+        }
     }
 }
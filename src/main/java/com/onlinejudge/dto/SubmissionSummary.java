@@ -0,0 +1,38 @@
+package com.onlinejudge.dto;
+
+import com.onlinejudge.model.Submission;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Submission row for listings. Selected with a constructor expression, so the source code
+ * and output columns are never read.
+ */
+@Data
+public class SubmissionSummary {
+    private Long id;
+    private Long problemId;
+    private String problemTitle;
+    private Integer languageId;
+    private String languageName;
+    private Submission.Verdict verdict;
+    private Submission.JudgeMode judgeMode;
+    private Double executionTime;
+    private Integer memoryUsed;
+    private LocalDateTime submittedAt;
+
+    public SubmissionSummary(Long id, Long problemId, Integer languageId, String languageName,
+                             Submission.Verdict verdict, Submission.JudgeMode judgeMode, Double executionTime,
+                             Integer memoryUsed, LocalDateTime submittedAt) {
+        this.id = id;
+        this.problemId = problemId;
+        this.languageId = languageId;
+        this.languageName = languageName;
+        this.verdict = verdict;
+        this.judgeMode = judgeMode;
+        this.executionTime = executionTime;
+        this.memoryUsed = memoryUsed;
+        this.submittedAt = submittedAt;
+    }
+}
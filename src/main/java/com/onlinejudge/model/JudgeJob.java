@@ -0,0 +1,56 @@
+package com.onlinejudge.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A submission waiting for, or being judged by, a judge worker (judge.queue.mode=database).
+ * A worker holds a job for as long as it keeps renewing its lease; once the lease runs out the job
+ * can be claimed again. The row is deleted once the verdict is saved.
+ */
+@Entity
+@Table(name = "judge_jobs", indexes = {
+        @Index(name = "idx_judge_jobs_status_lane_created", columnList = "status, lane, created_at")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class JudgeJob {
+
+    @Id
+    @Column(name = "submission_id")
+    private Long submissionId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Status status;
+
+    // Stored as its ordinal, so claims can order by priority
+    @Enumerated(EnumType.ORDINAL)
+    @Column(nullable = false)
+    private Submission.Lane lane;
+
+    @Column(name = "lease_owner", length = 128)
+    private String leaseOwner;
+
+    @Column(name = "lease_expires_at")
+    private LocalDateTime leaseExpiresAt;
+
+    // Times the job was claimed, including claims by workers that died
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    public enum Status {
+        QUEUED,
+        RUNNING
+    }
+}
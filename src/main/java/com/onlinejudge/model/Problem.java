@@ -36,6 +36,26 @@ public class Problem {
     @Column(nullable = false)
     private Integer memoryLimit; // in KB
 
+    @Column(name = "output_limit")
+    private Integer outputLimit; // in KB, null = judge default
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "checker_type")
+    private CheckerType checkerType; // null = judge default comparison
+
+    @Column(name = "checker_epsilon")
+    private Double checkerEpsilon; // FLOAT only, null = judge default
+
+    @Column(name = "checker_source", columnDefinition = "TEXT")
+    private String checkerSource; // CUSTOM only
+
+    @Column(name = "checker_language_id")
+    private Integer checkerLanguageId; // CUSTOM only
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "judge_mode")
+    private Submission.JudgeMode judgeMode; // null = judge default
+
     @Column(name = "created_at")
     private LocalDateTime createdAt;
 
@@ -47,4 +67,8 @@ public class Problem {
     public enum Difficulty {
         EASY, MEDIUM, HARD
     }
+
+    public enum CheckerType {
+        EXACT, NORMALIZED, TOKENS, FLOAT, CUSTOM
+    }
 }
@@ -8,8 +8,15 @@ import lombok.NoArgsConstructor;
 
 import java.time.LocalDateTime;
 
+/**
+ * Verdict and timing of a submission. Rows hold only small columns, so status updates and listings
+ * stay cheap; the source code and diagnostics are in {@link SubmissionContent}.
+ */
 @Entity
-@Table(name = "submissions")
+@Table(name = "submissions", indexes = {
+        @Index(name = "idx_submissions_problem_submitted", columnList = "problem_id, submitted_at, id"),
+        @Index(name = "idx_submissions_submitted", columnList = "submitted_at, id")
+})
 @Data
 @Builder
 @NoArgsConstructor
@@ -17,7 +24,9 @@ import java.time.LocalDateTime;
 public class Submission {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // Sequence ids (allocated 50 at a time) let Hibernate batch inserts; IDENTITY columns cannot be batched
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "submissions_seq")
+    @SequenceGenerator(name = "submissions_seq", sequenceName = "submissions_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "problem_id", nullable = false)
@@ -26,30 +35,27 @@ public class Submission {
     @Column(name = "language_id", nullable = false)
     private Integer languageId;
 
-    @Column(name = "language_name")
+    @Column(name = "language_name", length = 32)
     private String languageName;
 
-    @Column(name = "source_code", columnDefinition = "TEXT", nullable = false)
-    private String sourceCode;
-
     @Enumerated(EnumType.STRING)
+    @Column(length = 32)
     private Verdict verdict;
 
+    @Enumerated(EnumType.STRING)
+    @Column(name = "judge_mode", length = 16)
+    private JudgeMode judgeMode;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 16)
+    private Lane lane;
+
     @Column(name = "execution_time")
     private Double executionTime; // in seconds
 
     @Column(name = "memory_used")
     private Integer memoryUsed; // in KB
 
-    @Column(columnDefinition = "TEXT")
-    private String output;
-
-    @Column(name = "compile_output", columnDefinition = "TEXT")
-    private String compileOutput;
-
-    @Column(name = "error_message", columnDefinition = "TEXT")
-    private String errorMessage;
-
     @Column(name = "submitted_at")
     private LocalDateTime submittedAt;
 
@@ -64,8 +70,28 @@ public class Submission {
         WRONG_ANSWER,
         TIME_LIMIT_EXCEEDED,
         MEMORY_LIMIT_EXCEEDED,
+        OUTPUT_LIMIT_EXCEEDED,
         RUNTIME_ERROR,
         COMPILATION_ERROR,
         INTERNAL_ERROR
     }
+
+    public enum JudgeMode {
+        /** Stop at the first failing test (contest behavior). */
+        FAIL_FAST,
+        /** Run every test and report each one. */
+        RUN_ALL,
+        /** Run the sample tests first, then the hidden ones; stop at the first failure. */
+        SAMPLES_FIRST
+    }
+
+    /**
+     * Judge queue priority, highest first.
+     */
+    public enum Lane {
+        CONTEST,
+        PRACTICE,
+        /** Judging a submission again; only through the rejudge endpoint. */
+        REJUDGE
+    }
 }
@@ -0,0 +1,44 @@
+package com.onlinejudge.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+/**
+ * The large text of a submission: its source code and the judge's diagnostics.
+ * Kept out of the {@code submissions} table so verdict updates and listings only touch narrow rows;
+ * it is read when a single submission is shown or judged.
+ */
+@Entity
+@Table(name = "submission_contents")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SubmissionContent {
+
+    // Same as the submission's id
+    @Id
+    private Long id;
+
+    @MapsId
+    @OneToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "submission_id")
+    @ToString.Exclude
+    private Submission submission;
+
+    @Column(name = "source_code", columnDefinition = "TEXT", nullable = false)
+    private String sourceCode;
+
+    @Column(columnDefinition = "TEXT")
+    private String output;
+
+    @Column(name = "compile_output", columnDefinition = "TEXT")
+    private String compileOutput;
+
+    @Column(name = "error_message", columnDefinition = "TEXT")
+    private String errorMessage;
+}
@@ -0,0 +1,52 @@
+package com.onlinejudge.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Entity
+@Table(name = "submission_test_results", indexes = {
+        @Index(name = "idx_test_results_submission", columnList = "submission_id, test_case_number")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SubmissionTestResult {
+
+    @Id
+    // Allocated in blocks, so the rows of a report go out as one JDBC batch
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "submission_test_results_seq")
+    @SequenceGenerator(name = "submission_test_results_seq", sequenceName = "submission_test_results_seq",
+            allocationSize = 50)
+    private Long id;
+
+    @Column(name = "submission_id", nullable = false)
+    private Long submissionId;
+
+    @Column(name = "test_case_number", nullable = false)
+    private Integer testCaseNumber;
+
+    @Column(nullable = false)
+    private Boolean passed;
+
+    @Column(name = "actual_output", columnDefinition = "TEXT")
+    private String actualOutput;
+
+    @Column(name = "expected_output", columnDefinition = "TEXT")
+    private String expectedOutput;
+
+    @Column(length = 255)
+    private String message; // where the output first differs
+
+    @Column(name = "execution_time")
+    private Double executionTime; // in seconds
+
+    @Column(name = "memory_used")
+    private Integer memoryUsed; // in KB
+
+    @Column(name = "is_hidden")
+    private Boolean hidden;
+}
@@ -21,10 +21,24 @@ public class TestCase {
     @Column(name = "problem_id", nullable = false)
     private Long problemId;
 
-    @Column(columnDefinition = "TEXT", nullable = false)
+    // Test data lives in the TestDataStore under these hashes
+    @Column(name = "input_hash", length = 64, nullable = false)
+    private String inputHash;
+
+    @Column(name = "expected_output_hash", length = 64, nullable = false)
+    private String expectedOutputHash;
+
+    @Column(name = "input_size")
+    private Long inputSize; // in bytes
+
+    @Column(name = "expected_output_size")
+    private Long expectedOutputSize; // in bytes
+
+    // Content when creating a test case or showing a sample; never loaded for judging
+    @Transient
     private String input;
 
-    @Column(name = "expected_output", columnDefinition = "TEXT", nullable = false)
+    @Transient
     private String expectedOutput;
 
     @Column(name = "is_hidden")
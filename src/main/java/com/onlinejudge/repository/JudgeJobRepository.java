@@ -0,0 +1,51 @@
+package com.onlinejudge.repository;
+
+import com.onlinejudge.model.JudgeJob;
+import com.onlinejudge.model.Submission;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface JudgeJobRepository extends JpaRepository<JudgeJob, Long> {
+
+    String CLAIMABLE = "(j.status = com.onlinejudge.model.JudgeJob$Status.QUEUED or j.leaseExpiresAt < :now)";
+
+    // Highest priority lane first, then oldest; queued jobs and jobs whose worker stopped renewing the lease
+    @Query("select j from JudgeJob j where " + CLAIMABLE + " order by j.lane, j.createdAt, j.submissionId")
+    List<JudgeJob> findClaimable(@Param("now") LocalDateTime now, Pageable page);
+
+    // Only one of several workers racing for the same job updates the row
+    @Modifying
+    @Query("update JudgeJob j set j.status = com.onlinejudge.model.JudgeJob$Status.RUNNING, j.leaseOwner = :owner, "
+            + "j.leaseExpiresAt = :until, j.attempts = j.attempts + 1 "
+            + "where j.submissionId = :id and " + CLAIMABLE)
+    int claim(@Param("id") Long id, @Param("owner") String owner, @Param("until") LocalDateTime until,
+              @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("update JudgeJob j set j.leaseExpiresAt = :until "
+            + "where j.submissionId in :ids and j.leaseOwner = :owner "
+            + "and j.status = com.onlinejudge.model.JudgeJob$Status.RUNNING")
+    int renew(@Param("ids") Collection<Long> ids, @Param("owner") String owner, @Param("until") LocalDateTime until);
+
+    @Modifying
+    @Query("update JudgeJob j set j.status = com.onlinejudge.model.JudgeJob$Status.QUEUED, j.leaseOwner = null, "
+            + "j.leaseExpiresAt = null where j.submissionId in :ids and j.leaseOwner = :owner")
+    int release(@Param("ids") Collection<Long> ids, @Param("owner") String owner);
+
+    @Modifying
+    @Query("delete from JudgeJob j where j.submissionId in :ids and j.leaseOwner = :owner")
+    int complete(@Param("ids") Collection<Long> ids, @Param("owner") String owner);
+
+    long countByStatus(JudgeJob.Status status);
+
+    long countByLane(Submission.Lane lane);
+}
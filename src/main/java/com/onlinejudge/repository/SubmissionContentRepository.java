@@ -0,0 +1,19 @@
+package com.onlinejudge.repository;
+
+import com.onlinejudge.model.SubmissionContent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface SubmissionContentRepository extends JpaRepository<SubmissionContent, Long> {
+
+    // Sets the judge's output without loading the source code
+    @Modifying
+    @Query("update SubmissionContent c set c.compileOutput = :compileOutput, c.errorMessage = :errorMessage "
+            + "where c.id = :id")
+    int updateDiagnostics(@Param("id") Long id, @Param("compileOutput") String compileOutput,
+                          @Param("errorMessage") String errorMessage);
+}
@@ -1,13 +1,34 @@
 package com.onlinejudge.repository;
 
+import com.onlinejudge.dto.SubmissionSummary;
 import com.onlinejudge.model.Submission;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
 public interface SubmissionRepository extends JpaRepository<Submission, Long> {
-    List<Submission> findByProblemIdOrderBySubmittedAtDesc(Long problemId);
-    List<Submission> findTop10ByOrderBySubmittedAtDesc();
+
+    String SUMMARY = "select new com.onlinejudge.dto.SubmissionSummary(s.id, s.problemId, s.languageId, "
+            + "s.languageName, s.verdict, s.judgeMode, s.executionTime, s.memoryUsed, s.submittedAt) "
+            + "from Submission s ";
+
+    // Listings are keyset-paginated on (submittedAt, id), newest first; pass the page size as a Pageable
+    @Query(SUMMARY + "where s.problemId = :problemId order by s.submittedAt desc, s.id desc")
+    List<SubmissionSummary> findSummariesByProblemId(@Param("problemId") Long problemId, Pageable page);
+
+    @Query(SUMMARY + "where s.problemId = :problemId "
+            + "and (s.submittedAt < :submittedAt or (s.submittedAt = :submittedAt and s.id < :id)) "
+            + "order by s.submittedAt desc, s.id desc")
+    List<SubmissionSummary> findSummariesByProblemIdBefore(@Param("problemId") Long problemId,
+                                                           @Param("submittedAt") LocalDateTime submittedAt,
+                                                           @Param("id") Long id, Pageable page);
+
+    @Query(SUMMARY + "order by s.submittedAt desc, s.id desc")
+    List<SubmissionSummary> findRecentSummaries(Pageable page);
 }
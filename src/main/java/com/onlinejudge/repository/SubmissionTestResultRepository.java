@@ -0,0 +1,19 @@
+package com.onlinejudge.repository;
+
+import com.onlinejudge.model.SubmissionTestResult;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface SubmissionTestResultRepository extends JpaRepository<SubmissionTestResult, Long> {
+    List<SubmissionTestResult> findBySubmissionIdOrderByTestCaseNumberAsc(Long submissionId);
+
+    @Modifying
+    @Query("delete from SubmissionTestResult r where r.submissionId = :submissionId")
+    int deleteBySubmissionId(@Param("submissionId") Long submissionId);
+}
@@ -0,0 +1,139 @@
+package com.onlinejudge.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Runner that executes every test case of a submission inside one container.
+ *
+ * The runner is a POSIX sh script, so it works in every judge image. For test {@code i} it reads
+ * {@code .batch/i.in} and leaves {@code i.out}, {@code i.err}, {@code i.rc} (exit code), {@code i.times}
+ * (CPU time, see {@link CpuTimes}) and, if the wall limit killed it, an empty {@code i.tle}.
+ * Each test runs in its own subshell, so its CPU time only counts that test.
+ *
+ * The runner runs as root and starts each program as an unprivileged user with {@code su}. While
+ * the tests run, {@code .batch} belongs to root alone, so a program can neither read the other inputs
+ * nor write any result; after each test every process of that user is killed, so nothing a program
+ * started keeps running into the next test or changes its results afterwards. The directory is
+ * handed back to the owner of the workspace when the runner exits.
+ */
+final class BatchScript {
+
+    static final String DIR = ".batch";
+
+    private BatchScript() {
+    }
+
+    /**
+     * Create {@code .batch} in the container's workspace with the inputs and the runner script.
+     *
+     * @return The batch directory on the host
+     */
+    static Path prepare(Path workspace, List<Path> stdinFiles, String runCommand, String user, int wallLimitMs,
+                        long outputLimitBytes, boolean stopOnFailure) throws IOException {
+        Path dir = workspace.resolve(DIR);
+        Files.createDirectories(dir);
+        for (int i = 0; i < stdinFiles.size(); i++) {
+            // Copied rather than linked: the workspace is writable by the program
+            Files.copy(stdinFiles.get(i), dir.resolve((i + 1) + ".in"));
+        }
+        Files.writeString(dir.resolve("run.sh"),
+                script(runCommand, user, stdinFiles.size(), wallLimitMs, outputLimitBytes, stopOnFailure));
+        return dir;
+    }
+
+    /**
+     * Path of the runner script inside the container.
+     */
+    static String command() {
+        return "sh /code/" + DIR + "/run.sh";
+    }
+
+    /**
+     * @param user User the program runs as; every process of this user is killed between tests
+     */
+    static String script(String runCommand, String user, int count, int wallLimitMs, long outputLimitBytes,
+                         boolean stopOnFailure) {
+        // ulimit -f counts 512-byte blocks in dash and busybox; the exact limit is checked on the host
+        long fileBlocks = outputLimitBytes / 512 + 1;
+        String wallSeconds = String.format(Locale.ROOT, "%.3f", wallLimitMs / 1000.0);
+        String asUser = "su -s /bin/sh " + user + " -c ";
+        return "cd /code\n"
+                + "b=/code/" + DIR + "\n"
+                // Sticky /code: the program cannot swap .batch for a directory of its own
+                + "owner=$(stat -c %u:%g /code)\n"
+                + "chown -R 0:0 $b && chmod -R go-rwx $b && chmod +t /code || exit 1\n"
+                + "trap 'chown -R $owner $b' EXIT\n"
+                + "strays() { " + asUser + "'kill -9 -1' >/dev/null 2>&1; }\n"
+                + "strays\n"
+                + "i=1\n"
+                + "while [ $i -le " + count + " ]; do\n"
+                + "  t=$b/$i\n"
+                + "  (\n"
+                + "    ulimit -f " + fileBlocks + "\n"
+                + "    " + asUser + "'" + runCommand + "' < $t.in > $t.out 2> $t.err &\n"
+                + "    pid=$!\n"
+                + "    ( sleep " + wallSeconds + "; kill -9 $pid && : > $t.tle ) &\n"
+                + "    watchdog=$!\n"
+                + "    wait $pid\n"
+                + "    rc=$?\n"
+                + "    kill $watchdog\n"
+                + "    times > $t.times\n"
+                + "    echo $rc > $t.rc\n"
+                + "  ) 2>/dev/null\n"
+                // Including whatever the program started, and the program itself if su was killed first
+                + "  strays\n"
+                + (stopOnFailure ? "  [ \"$(cat $t.rc)\" = 0 ] || break\n" : "")
+                + "  i=$((i + 1))\n"
+                + "done\n"
+                + "exit 0\n";
+    }
+
+    /**
+     * Exit code of test {@code number} (1-based), or -1 if the runner never finished it.
+     */
+    static int exitCode(Path dir, int number) {
+        try {
+            return Integer.parseInt(Files.readString(dir.resolve(number + ".rc")).trim());
+        } catch (IOException | NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    static boolean timedOut(Path dir, int number) {
+        return Files.exists(dir.resolve(number + ".tle"));
+    }
+
+    static long outputSize(Path dir, int number) throws IOException {
+        return Files.size(dir.resolve(number + ".out"));
+    }
+
+    /**
+     * At most {@code maxBytes} of a test's stdout ("out") or stderr ("err").
+     */
+    static String read(Path dir, int number, String stream, long maxBytes) throws IOException {
+        return new String(readBytes(dir, number, stream, maxBytes), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * At most {@code maxBytes} of a test's stdout ("out") or stderr ("err"), as written.
+     */
+    static byte[] readBytes(Path dir, int number, String stream, long maxBytes) throws IOException {
+        Path file = dir.resolve(number + "." + stream);
+        if (!Files.exists(file)) {
+            return new byte[0];
+        }
+        try (InputStream in = Files.newInputStream(file)) {
+            return in.readNBytes((int) Math.min(Integer.MAX_VALUE, maxBytes));
+        }
+    }
+
+    static Path timesFile(Path dir, int number) {
+        return dir.resolve(number + ".times");
+    }
+}
@@ -0,0 +1,11 @@
+package com.onlinejudge.service;
+
+/**
+ * Thrown when a custom checker cannot produce a verdict (it failed to compile, crashed or timed out).
+ */
+public class CheckerException extends RuntimeException {
+
+    public CheckerException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,304 @@
+package com.onlinejudge.service;
+
+import com.onlinejudge.model.Problem;
+import com.onlinejudge.model.TestCase;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Decides whether a program's output is correct for a test case, using the checker configured on the problem.
+ *
+ * Built-in checkers compare against the expected output with {@link OutputComparator}.
+ * A CUSTOM checker is a program in any supported language, compiled once per problem and kept until
+ * its source changes (a failed compilation is tried again after 30 s, since the cause may have been
+ * Docker or workspace space rather than the source). It reads three length-prefixed sections from stdin
+ * (test input, contestant output, expected output), each a line with the byte count followed by exactly
+ * that many bytes.
+ * Exit codes follow testlib: 0 accepts, 1 (wrong answer) and 2 (presentation error) reject, with the
+ * first line of stderr or stdout shown as the message, and anything else is a checker failure.
+ * Python, Java and Node.js also exit with 1 on an uncaught exception, so a rejection whose stderr
+ * carries a stack trace is a checker failure too rather than a wrong answer.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class CheckerService {
+
+    private static final int CHECKER_OUTPUT_LIMIT_KB = 64;
+    private static final int MAX_MESSAGE_LENGTH = 255;
+    private static final int EXIT_WRONG_ANSWER = 1;
+    private static final int EXIT_PRESENTATION_ERROR = 2;
+    private static final long FAILED_COMPILE_RETRY_MS = 30_000;
+    // Python traceback, or a Java ("\tat ...") or Node.js ("    at ...") stack frame
+    private static final Pattern STACK_TRACE = Pattern.compile(
+            "Traceback \\(most recent call last\\)|^\\s+at \\S", Pattern.MULTILINE);
+
+    private final CodeExecutor codeExecutor;
+    private final TestDataStore testDataStore;
+
+    @Value("${judge.comparison-mode:NORMALIZED}")
+    private OutputComparator.Mode defaultMode;
+
+    @Value("${judge.checker.float-epsilon:1e-6}")
+    private double defaultEpsilon;
+
+    @Value("${judge.checker.time-limit-ms:10000}")
+    private int checkerTimeLimitMs;
+
+    @Value("${judge.checker.memory-limit-kb:262144}")
+    private int checkerMemoryLimitKb;
+
+    // Compiled custom checkers by problem id
+    private final Map<Long, CompiledChecker> checkers = new ConcurrentHashMap<>();
+
+    /**
+     * Check one test case.
+     *
+     * @param actualOutput The program's stdout exactly as it was written; it is never decoded
+     * @throws CheckerException if a custom checker could not produce a verdict
+     */
+    public OutputComparator.Result check(Problem problem, TestCase testCase, byte[] actualOutput) {
+        Problem.CheckerType type = problem.getCheckerType();
+        if (type == Problem.CheckerType.CUSTOM) {
+            return runCustomChecker(problem, testCase, actualOutput);
+        }
+
+        OutputComparator.Mode mode = type == null ? defaultMode : OutputComparator.Mode.valueOf(type.name());
+        double epsilon = problem.getCheckerEpsilon() != null ? problem.getCheckerEpsilon() : defaultEpsilon;
+        try (InputStream expected = testDataStore.open(testCase.getExpectedOutputHash())) {
+            return OutputComparator.compare(new ByteArrayInputStream(actualOutput), expected, mode, epsilon);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Validate the checker settings of a problem before it is saved.
+     */
+    public void validate(Problem problem) {
+        if (problem.getCheckerEpsilon() != null && !(problem.getCheckerEpsilon() >= 0)) {
+            throw new IllegalArgumentException("checkerEpsilon must be a non-negative number");
+        }
+        if (problem.getCheckerType() == Problem.CheckerType.CUSTOM
+                && (problem.getCheckerSource() == null || problem.getCheckerSource().isBlank()
+                || problem.getCheckerLanguageId() == null)) {
+            throw new IllegalArgumentException("A CUSTOM checker needs checkerSource and checkerLanguageId");
+        }
+    }
+
+    private OutputComparator.Result runCustomChecker(Problem problem, TestCase testCase, byte[] actualOutput) {
+        CodeExecutor.ExecutionResult result;
+        CompiledChecker checker = getChecker(problem);
+        try {
+            result = runChecker(checker.awaitProgram(), testCase, actualOutput);
+        } finally {
+            checker.release();
+        }
+
+        if (result.status == CodeExecutor.ExecutionResult.ResultStatus.SUCCESS) {
+            return OutputComparator.Result.MATCH;
+        }
+        if (result.status == CodeExecutor.ExecutionResult.ResultStatus.RUNTIME_ERROR
+                && (result.exitCode == EXIT_WRONG_ANSWER || result.exitCode == EXIT_PRESENTATION_ERROR)) {
+            if (result.stderr != null && STACK_TRACE.matcher(result.stderr).find()) {
+                throw new CheckerException("Checker crashed: " + crashMessage(result.stderr));
+            }
+            return OutputComparator.Result.mismatch(0, 0, firstLine(result.stderr, result.stdout));
+        }
+        throw new CheckerException("Checker failed: " + switch (result.status) {
+            case TIME_LIMIT_EXCEEDED -> "time limit exceeded";
+            case INTERNAL_ERROR -> result.errorMessage;
+            default -> result.status + " (exit code " + result.exitCode + ")";
+        });
+    }
+
+    private CodeExecutor.ExecutionResult runChecker(CodeExecutor.CompiledProgram program, TestCase testCase,
+                                                    byte[] actualOutput) {
+        if (!program.isSuccessful()) {
+            CodeExecutor.ExecutionResult failure = program.getFailure();
+            throw new CheckerException("Checker failed to compile: "
+                    + (failure.errorMessage != null ? failure.errorMessage : failure.stderr));
+        }
+
+        Path stdinFile = null;
+        try {
+            stdinFile = Files.createTempFile("onlinejudge-checker", null);
+            writeCheckerInput(stdinFile, testCase, actualOutput);
+            return codeExecutor.run(program, stdinFile, checkerTimeLimitMs, checkerMemoryLimitKb,
+                    CHECKER_OUTPUT_LIMIT_KB);
+        } catch (IOException e) {
+            throw new CheckerException("Failed to prepare checker input: " + e.getMessage());
+        } finally {
+            deleteQuietly(stdinFile);
+        }
+    }
+
+    /**
+     * The compiled checker of a problem, retained for one run; the caller must release it.
+     * The checker is compiled outside the map, so other problems' lookups are never held up by it;
+     * runs of the same problem wait for the one compilation.
+     */
+    private CompiledChecker getChecker(Problem problem) {
+        boolean[] created = {false};
+        CompiledChecker checker = checkers.compute(problem.getId(), (id, existing) -> {
+            if (existing != null && existing.matches(problem) && !existing.isFailedLongAgo()) {
+                existing.retain();
+                return existing;
+            }
+            if (existing != null) {
+                // Closed once the runs still using it finish
+                existing.release();
+            }
+            created[0] = true;
+            CompiledChecker compiled = new CompiledChecker(problem.getCheckerLanguageId(), problem.getCheckerSource());
+            compiled.retain();
+            return compiled;
+        });
+        if (created[0]) {
+            log.info("Compiling checker for problem {}", problem.getId());
+            CodeExecutor.CompiledProgram program;
+            try {
+                program = codeExecutor.compile(problem.getCheckerSource(), problem.getCheckerLanguageId());
+            } catch (RuntimeException e) {
+                program = CodeExecutor.CompiledProgram.failed(problem.getCheckerLanguageId(),
+                        CodeExecutor.ExecutionResult.error(e.getMessage()));
+            }
+            if (!program.isSuccessful()) {
+                log.warn("Checker for problem {} failed to compile, retrying in {} s", problem.getId(),
+                        FAILED_COMPILE_RETRY_MS / 1000);
+            }
+            checker.complete(program);
+        }
+        return checker;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        checkers.values().forEach(CompiledChecker::release);
+        checkers.clear();
+    }
+
+    /**
+     * Write the three length-prefixed sections. Test data is copied file to file by the kernel.
+     */
+    private void writeCheckerInput(Path file, TestCase testCase, byte[] actual) throws IOException {
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            transferSection(out, testDataStore.path(testCase.getInputHash()));
+            out.write(ByteBuffer.wrap((actual.length + "\n").getBytes(StandardCharsets.UTF_8)));
+            out.write(ByteBuffer.wrap(actual));
+            transferSection(out, testDataStore.path(testCase.getExpectedOutputHash()));
+        }
+    }
+
+    private static void transferSection(FileChannel out, Path data) throws IOException {
+        try (FileChannel in = FileChannel.open(data, StandardOpenOption.READ)) {
+            long size = in.size();
+            out.write(ByteBuffer.wrap((size + "\n").getBytes(StandardCharsets.UTF_8)));
+            for (long position = 0; position < size; ) {
+                position += in.transferTo(position, size - position, out);
+            }
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.debug("Failed to delete {}", file);
+        }
+    }
+
+    private static String firstLine(String... candidates) {
+        for (String candidate : candidates) {
+            if (candidate != null && !candidate.isBlank()) {
+                String line = candidate.strip().lines().findFirst().orElse("");
+                return line.length() > MAX_MESSAGE_LENGTH ? line.substring(0, MAX_MESSAGE_LENGTH) : line;
+            }
+        }
+        return "Rejected by checker";
+    }
+
+    private static String crashMessage(String stderr) {
+        String trace = stderr.strip();
+        // A Python traceback ends with the exception; Java and Node.js print it first
+        String line = trace.startsWith("Traceback")
+                ? trace.substring(trace.lastIndexOf('\n') + 1) : trace.lines().findFirst().orElse("");
+        return line.length() > MAX_MESSAGE_LENGTH ? line.substring(0, MAX_MESSAGE_LENGTH) : line;
+    }
+
+    /**
+     * A compiled checker, closed once it has been replaced (or the service stops) and no run uses it.
+     */
+    private static final class CompiledChecker {
+        private final Integer languageId;
+        private final String source;
+        private final CompletableFuture<CodeExecutor.CompiledProgram> program = new CompletableFuture<>();
+        private volatile long failedAt;
+        // Runs using the program, plus one while it is the problem's current checker
+        private int references = 1;
+
+        CompiledChecker(Integer languageId, String source) {
+            this.languageId = languageId;
+            this.source = source;
+        }
+
+        void complete(CodeExecutor.CompiledProgram compiled) {
+            if (!compiled.isSuccessful()) {
+                failedAt = System.currentTimeMillis();
+            }
+            program.complete(compiled);
+        }
+
+        /**
+         * The program, once the run that started compiling it is done.
+         */
+        CodeExecutor.CompiledProgram awaitProgram() {
+            return program.join();
+        }
+
+        /**
+         * Whether the compilation failed long enough ago to be tried again.
+         */
+        boolean isFailedLongAgo() {
+            long failed = failedAt;
+            return failed != 0 && System.currentTimeMillis() - failed > FAILED_COMPILE_RETRY_MS;
+        }
+
+        boolean matches(Problem problem) {
+            return Objects.equals(languageId, problem.getCheckerLanguageId())
+                    && Objects.equals(source, problem.getCheckerSource());
+        }
+
+        synchronized void retain() {
+            references++;
+        }
+
+        synchronized void release() {
+            if (--references == 0) {
+                program.thenAccept(CodeExecutor.CompiledProgram::close);
+            }
+        }
+    }
+}
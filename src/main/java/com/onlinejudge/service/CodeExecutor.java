@@ -1,14 +1,83 @@
 package com.onlinejudge.service;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 /**
  * Interface for code execution strategies.
  * Implementations can run code locally or in Docker containers.
+ *
+ * Execution is split in two phases: {@link #compile} prepares a workspace once per
+ * submission, and {@link #run} executes the prepared program against one input.
  */
 public interface CodeExecutor {
 
     /**
-     * Execute code and return the result.
-     * 
+     * Output limit used when the caller does not specify one.
+     */
+    int DEFAULT_OUTPUT_LIMIT_KB = 16 * 1024;
+
+    /**
+     * Write the source code to a fresh workspace and compile it if the language needs it.
+     * The returned handle owns the workspace and must be closed after the last run.
+     *
+     * @param sourceCode The source code to compile
+     * @param languageId Language identifier (71=Python, 62=Java, etc.)
+     * @return Compiled program handle; check {@link CompiledProgram#isSuccessful()} before running
+     */
+    CompiledProgram compile(String sourceCode, int languageId);
+
+    /**
+     * Run a previously compiled program against one input.
+     *
+     * @param program Handle returned by {@link #compile}
+     * @param stdinFile File the program's stdin is redirected from, or null for empty input
+     * @param timeLimitMs Maximum execution time in milliseconds
+     * @param memoryLimitKb Maximum memory usage in KB
+     * @param outputLimitKb Maximum stdout size in KB; the program is killed as soon as it writes more
+     * @return Execution result with stdout, stderr, status and, where the executor measures it, peak memory
+     */
+    ExecutionResult run(CompiledProgram program, Path stdinFile, int timeLimitMs, int memoryLimitKb,
+                        int outputLimitKb);
+
+    /**
+     * Run a compiled program against several inputs in one go.
+     * Executors that pay a fixed cost per launch (a container) override this to pay it once.
+     *
+     * @param stdinFiles Inputs in the order they should run
+     * @param stopOnFailure Stop after the first run that does not exit successfully. A wrong answer exits
+     *                      successfully, so the executor cannot stop at one by itself; callers that stop on
+     *                      any failure check the outputs and pass the inputs in smaller batches
+     * @return One result per run, in input order; shorter than the inputs if it stopped early
+     */
+    default List<ExecutionResult> runBatch(CompiledProgram program, List<Path> stdinFiles, int timeLimitMs,
+                                           int memoryLimitKb, int outputLimitKb, boolean stopOnFailure) {
+        List<ExecutionResult> results = new ArrayList<>();
+        for (Path stdinFile : stdinFiles) {
+            ExecutionResult result = run(program, stdinFile, timeLimitMs, memoryLimitKb, outputLimitKb);
+            results.add(result);
+            if (stopOnFailure && result.status != ExecutionResult.ResultStatus.SUCCESS) {
+                break;
+            }
+        }
+        return results;
+    }
+
+    /**
+     * True if {@link #runBatch} is cheaper than calling {@link #run} per input.
+     */
+    default boolean supportsBatch() {
+        return false;
+    }
+
+    /**
+     * Compile, run once and clean up. Convenience for one-off executions.
+     *
      * @param sourceCode The source code to execute
      * @param languageId Language identifier (71=Python, 62=Java, etc.)
      * @param stdin Input to provide to the program
@@ -16,8 +85,23 @@ public interface CodeExecutor {
      * @param memoryLimitKb Maximum memory usage in KB
      * @return Execution result with stdout, stderr, and status
      */
-    ExecutionResult execute(String sourceCode, int languageId, String stdin, 
-                            int timeLimitMs, int memoryLimitKb);
+    default ExecutionResult execute(String sourceCode, int languageId, String stdin,
+                                    int timeLimitMs, int memoryLimitKb) {
+        try (CompiledProgram program = compile(sourceCode, languageId)) {
+            if (!program.isSuccessful()) {
+                return program.getFailure();
+            }
+            Path stdinFile = Files.createTempFile("onlinejudge-stdin", null);
+            try {
+                Files.writeString(stdinFile, stdin != null ? stdin : "");
+                return run(program, stdinFile, timeLimitMs, memoryLimitKb, DEFAULT_OUTPUT_LIMIT_KB);
+            } finally {
+                Files.deleteIfExists(stdinFile);
+            }
+        } catch (IOException e) {
+            return ExecutionResult.error("Failed to write input: " + e.getMessage());
+        }
+    }
 
     /**
      * Check if this executor is available (e.g., Docker is installed).
@@ -31,25 +115,112 @@ public interface CodeExecutor {
      */
     String getExecutorType();
 
+    /**
+     * Handle to a compiled program and the workspace it lives in.
+     * Runs against the same handle reuse the compiled artifact; closing it removes the workspace.
+     */
+    class CompiledProgram implements AutoCloseable {
+        private final int languageId;
+        private final Path workDir;
+        private final ExecutionResult failure;
+        private final long compileTimeMs;
+        private final Runnable cleanup;
+        private final AtomicBoolean closed = new AtomicBoolean(false);
+
+        private CompiledProgram(int languageId, Path workDir, ExecutionResult failure,
+                                long compileTimeMs, Runnable cleanup) {
+            this.languageId = languageId;
+            this.workDir = workDir;
+            this.failure = failure;
+            this.compileTimeMs = compileTimeMs;
+            this.cleanup = cleanup;
+        }
+
+        public static CompiledProgram ready(int languageId, Path workDir, long compileTimeMs, Runnable cleanup) {
+            return new CompiledProgram(languageId, workDir, null, compileTimeMs, cleanup);
+        }
+
+        public static CompiledProgram failed(int languageId, ExecutionResult failure) {
+            return new CompiledProgram(languageId, null, failure, 0, () -> {});
+        }
+
+        public boolean isSuccessful() {
+            return failure == null;
+        }
+
+        public int getLanguageId() {
+            return languageId;
+        }
+
+        public Path getWorkDir() {
+            return workDir;
+        }
+
+        /**
+         * Compilation error or internal error that prevented the program from being prepared.
+         */
+        public ExecutionResult getFailure() {
+            return failure;
+        }
+
+        public long getCompileTimeMs() {
+            return compileTimeMs;
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                cleanup.run();
+            }
+        }
+    }
+
     /**
      * Result of code execution.
+     *
+     * {@link #output} is stdout exactly as the program wrote it and is what checkers compare;
+     * {@link #stdout} is a decoded copy of at most {@link #STDOUT_PREVIEW_BYTES} of it, for display only.
      */
     class ExecutionResult {
+        public static final int STDOUT_PREVIEW_BYTES = 64 * 1024;
+
+        public byte[] output;
         public String stdout;
         public String stderr;
         public int exitCode;
         public long executionTimeMs;
         public ResultStatus status;
         public String errorMessage;
+        public long memoryUsedKb; // peak, 0 if not measured
 
         public ExecutionResult(String stdout, String stderr, int exitCode, long executionTimeMs) {
+            this(stdout, stdout != null ? stdout.getBytes(StandardCharsets.UTF_8) : new byte[0], stderr, exitCode,
+                    executionTimeMs);
+        }
+
+        /**
+         * Result of a program whose stdout was captured as raw bytes; only the preview is decoded.
+         */
+        public ExecutionResult(byte[] output, String stderr, int exitCode, long executionTimeMs) {
+            this(preview(output), output, stderr, exitCode, executionTimeMs);
+        }
+
+        private ExecutionResult(String stdout, byte[] output, String stderr, int exitCode, long executionTimeMs) {
             this.stdout = stdout;
+            this.output = output;
             this.stderr = stderr;
             this.exitCode = exitCode;
             this.executionTimeMs = executionTimeMs;
             this.status = exitCode == 0 ? ResultStatus.SUCCESS : ResultStatus.RUNTIME_ERROR;
         }
 
+        private static String preview(byte[] output) {
+            if (output.length <= STDOUT_PREVIEW_BYTES) {
+                return new String(output, StandardCharsets.UTF_8);
+            }
+            return new String(output, 0, STDOUT_PREVIEW_BYTES, StandardCharsets.UTF_8) + "\n[truncated]";
+        }
+
         public static ExecutionResult error(String message) {
             ExecutionResult r = new ExecutionResult("", "", -1, 0);
             r.status = ResultStatus.INTERNAL_ERROR;
@@ -75,12 +246,26 @@ public interface CodeExecutor {
             return r;
         }
 
+        public static ExecutionResult memoryLimitExceeded(long memoryUsedKb) {
+            ExecutionResult r = new ExecutionResult("", "Memory limit exceeded", 137, 0);
+            r.status = ResultStatus.MEMORY_LIMIT_EXCEEDED;
+            r.memoryUsedKb = memoryUsedKb;
+            return r;
+        }
+
+        public static ExecutionResult outputLimitExceeded() {
+            ExecutionResult r = new ExecutionResult("", "", -1, 0);
+            r.status = ResultStatus.OUTPUT_LIMIT_EXCEEDED;
+            return r;
+        }
+
         public enum ResultStatus {
             SUCCESS,
             COMPILATION_ERROR,
             RUNTIME_ERROR,
             TIME_LIMIT_EXCEEDED,
             MEMORY_LIMIT_EXCEEDED,
+            OUTPUT_LIMIT_EXCEEDED,
             INTERNAL_ERROR
         }
     }
@@ -0,0 +1,276 @@
+package com.onlinejudge.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed cache of compiled artifacts (a.out, Main.class, ...).
+ * Entries are keyed by a hash of the source code, language id and compile command,
+ * and evicted least-recently-used once the entry count or total size cap is reached.
+ * Entries are kept in a {@code compiled-artifacts} directory under {@code judge.compile-cache.dir}, where
+ * each process uses its own subdirectory named after its pid, since the index lives in memory. At startup
+ * the pid directories of processes that are no longer running are removed, and nothing else is touched.
+ */
+@Component
+@Slf4j
+public class CompilationCache {
+
+    private static final String DIR_NAME = "compiled-artifacts";
+
+    @Value("${judge.compile-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${judge.compile-cache.dir:${java.io.tmpdir}/onlinejudge-cache}")
+    private String cacheDir;
+
+    @Value("${judge.compile-cache.max-entries:500}")
+    private int maxEntries;
+
+    @Value("${judge.compile-cache.max-size-mb:256}")
+    private long maxSizeMb;
+
+    private Path base;
+    private Path root;
+
+    // Access-ordered: iteration starts at the least recently used entry
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+    // Restores copying an entry right now; a pinned entry that is evicted is deleted by its last restore
+    private final Map<String, Integer> pins = new HashMap<>();
+    private final Set<String> evictedWhilePinned = new HashSet<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    @PostConstruct
+    public void init() throws IOException {
+        // Never the configured directory itself, which may hold files that are not ours
+        base = Paths.get(cacheDir).resolve(DIR_NAME);
+        Files.createDirectories(base);
+        sweepOrphans();
+
+        root = base.resolve(Long.toString(ProcessHandle.current().pid()));
+        // Entries from a previous process with our pid are not indexed, so start from an empty directory
+        deleteRecursively(root);
+        Files.createDirectories(root);
+        log.info("Compilation cache {} at {} (max {} entries, {} MB)",
+                enabled ? "enabled" : "disabled", root, maxEntries, maxSizeMb);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        deleteQuietly(root);
+    }
+
+    /**
+     * Build the cache key for a source file compiled with the given toolchain.
+     *
+     * @param compileCommand Compile command template including flags (and image, for Docker)
+     */
+    public String key(String sourceCode, int languageId, String compileCommand) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(Integer.toString(languageId).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(compileCommand.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(sourceCode.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Copy the cached artifacts for {@code key} into the workspace. The entry is pinned while it is
+     * copied, so eviction cannot delete some of its files halfway through.
+     *
+     * @return true on a cache hit, false if the program has to be compiled
+     */
+    public boolean restore(String key, Path workDir) {
+        if (!enabled) {
+            return false;
+        }
+        Long expectedBytes;
+        synchronized (this) {
+            expectedBytes = entries.get(key);
+            if (expectedBytes == null) {
+                misses.incrementAndGet();
+                return false;
+            }
+            pins.merge(key, 1, Integer::sum);
+        }
+        Path entryDir = root.resolve(key);
+        try (Stream<Path> files = Files.list(entryDir)) {
+            long bytes = 0;
+            for (Path file : files.toList()) {
+                Files.copy(file, workDir.resolve(file.getFileName()),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+                bytes += Files.size(file);
+            }
+            if (bytes != expectedBytes) {
+                // Changed behind our back; a partial program would be judged as a wrong answer
+                throw new IOException("restored " + bytes + " of " + expectedBytes + " bytes");
+            }
+            hits.incrementAndGet();
+            return true;
+        } catch (IOException e) {
+            log.warn("Failed to restore cached artifacts {}, compiling instead: {}", key, e.getMessage());
+            misses.incrementAndGet();
+            return false;
+        } finally {
+            unpin(key);
+        }
+    }
+
+    private synchronized void unpin(String key) {
+        if (pins.merge(key, -1, Integer::sum) > 0) {
+            return;
+        }
+        pins.remove(key);
+        if (evictedWhilePinned.remove(key)) {
+            deleteQuietly(root.resolve(key));
+        }
+    }
+
+    /**
+     * Store the artifacts a successful compilation left in the workspace.
+     *
+     * @param exclude Workspace files that are inputs rather than artifacts (the source file)
+     */
+    public void store(String key, Path workDir, List<String> exclude) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (this) {
+            // An evicted entry still being restored keeps its directory until then
+            if (entries.containsKey(key) || evictedWhilePinned.contains(key)) {
+                return;
+            }
+        }
+        Path staging = root.resolve(".staging-" + UUID.randomUUID());
+        try {
+            Files.createDirectories(staging);
+            long bytes = 0;
+            try (Stream<Path> files = Files.list(workDir)) {
+                for (Path file : files.toList()) {
+                    if (!Files.isRegularFile(file) || exclude.contains(file.getFileName().toString())) {
+                        continue;
+                    }
+                    Files.copy(file, staging.resolve(file.getFileName()), StandardCopyOption.COPY_ATTRIBUTES);
+                    bytes += Files.size(file);
+                }
+            }
+            if (bytes > maxSizeMb * 1024 * 1024) {
+                deleteRecursively(staging);
+                return;
+            }
+            synchronized (this) {
+                if (entries.containsKey(key) || evictedWhilePinned.contains(key)) {
+                    deleteRecursively(staging);
+                    return;
+                }
+                Files.move(staging, root.resolve(key), StandardCopyOption.ATOMIC_MOVE);
+                entries.put(key, bytes);
+                totalBytes += bytes;
+                evict();
+            }
+        } catch (IOException e) {
+            log.warn("Failed to cache compiled artifacts {}: {}", key, e.getMessage());
+            deleteQuietly(staging);
+        }
+    }
+
+    private void evict() {
+        long maxBytes = maxSizeMb * 1024 * 1024;
+        Iterator<Map.Entry<String, Long>> it = entries.entrySet().iterator();
+        while ((entries.size() > maxEntries || totalBytes > maxBytes) && it.hasNext()) {
+            Map.Entry<String, Long> eldest = it.next();
+            it.remove();
+            totalBytes -= eldest.getValue();
+            if (pins.containsKey(eldest.getKey())) {
+                evictedWhilePinned.add(eldest.getKey());
+            } else {
+                deleteQuietly(root.resolve(eldest.getKey()));
+            }
+        }
+    }
+
+    /**
+     * Remove the directories of judge processes that are gone. Other processes' directories are in use.
+     */
+    private void sweepOrphans() {
+        long self = ProcessHandle.current().pid();
+        try (DirectoryStream<Path> children = Files.newDirectoryStream(base)) {
+            for (Path child : children) {
+                String name = child.getFileName().toString();
+                if (!name.matches("\\d{1,18}") || !Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+                    continue;
+                }
+                long pid = Long.parseLong(name);
+                if (pid != self && ProcessHandle.of(pid).map(ProcessHandle::isAlive).orElse(false)) {
+                    continue;
+                }
+                log.info("Removing orphaned compiled artifacts at {}", child);
+                deleteQuietly(child);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to sweep orphaned compiled artifacts in {}: {}", base, e.getMessage());
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            deleteRecursively(path);
+        } catch (IOException e) {
+            log.warn("Failed to delete: {}", path);
+        }
+    }
+
+    private static void deleteRecursively(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (Stream<Path> walk = Files.walk(path)) {
+            for (Path p : walk.sorted((a, b) -> b.compareTo(a)).toList()) {
+                Files.deleteIfExists(p);
+            }
+        }
+    }
+}
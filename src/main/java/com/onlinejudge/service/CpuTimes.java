@@ -0,0 +1,71 @@
+package com.onlinejudge.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * CPU time of a shell command from the shell's {@code times} builtin, which reports the user and
+ * system time (rusage) of every child the shell has waited for, including their descendants.
+ * Works in bash and in the POSIX sh of the judge images.
+ */
+final class CpuTimes {
+
+    // "0m0.120s" (bash) or "0m0.120000s" (dash, ash)
+    private static final Pattern DURATION = Pattern.compile("(\\d+)m([\\d.]+)s");
+
+    static final String TIMES_FILE = "times";
+
+    private CpuTimes() {
+    }
+
+    /**
+     * Run {@code command}, then write its CPU times to {@code timesFile} and exit with its exit code.
+     */
+    static String wrap(String command, String timesFile) {
+        return command + "; rc=$?; times > '" + timesFile + "'; exit $rc";
+    }
+
+    /**
+     * Like {@link #wrap}, for a root shell in a container that runs {@code command} as {@code user}.
+     * The times are written to {@link #TIMES_FILE} in {@code timesDir}, which is created for this run and
+     * only root may write, so the program cannot forge them; afterwards it is handed to the owner of /code.
+     * With {@code stickyCode}, /code is writable by the program and made sticky, so the program cannot
+     * replace the directory either.
+     */
+    static String wrapAsUser(String command, String user, String timesDir, boolean stickyCode) {
+        return "d='" + timesDir + "'; rm -rf \"$d\" && mkdir -m 700 \"$d\""
+                + (stickyCode ? " && chmod +t /code" : "") + " || exit 125; "
+                + "su -s /bin/sh " + user + " -c '" + command + "'; rc=$?; "
+                + "times > \"$d/" + TIMES_FILE + "\"; chown -R $(stat -c %u:%g /code) \"$d\"; exit $rc";
+    }
+
+    /**
+     * Read and delete a times file written by a wrapped command.
+     *
+     * @return User plus system time of the command's children in ms, or -1 if the command never got
+     *         to write it (it was killed, or the shell itself died)
+     */
+    static long readAndDelete(Path timesFile) {
+        try {
+            List<String> lines = Files.readAllLines(timesFile);
+            Files.deleteIfExists(timesFile);
+            // Line 1 is the shell itself, line 2 its children
+            if (lines.size() < 2) {
+                return -1;
+            }
+            long total = 0;
+            Matcher matcher = DURATION.matcher(lines.get(1));
+            while (matcher.find()) {
+                total += Long.parseLong(matcher.group(1)) * 60_000
+                        + Math.round(Double.parseDouble(matcher.group(2)) * 1000);
+            }
+            return total;
+        } catch (IOException | NumberFormatException e) {
+            return -1;
+        }
+    }
+}
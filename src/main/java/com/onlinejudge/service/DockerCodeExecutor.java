@@ -1,16 +1,22 @@
 package com.onlinejudge.service;
 
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
 import java.io.*;
 import java.nio.file.*;
+import java.nio.file.attribute.PosixFilePermission;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.*;
+import java.util.stream.Stream;
 
 /**
  * Docker-based code executor that runs code in isolated containers.
@@ -19,6 +25,9 @@ import java.util.concurrent.*;
  * 
  * Enabled when: executor.mode=docker
  * 
+ * Commands run through docker exec in warm containers from {@link DockerContainerPool}
+ * unless docker.pool.enabled=false, in which case every command is a cold docker run.
+ * 
  * Required Docker images (will be pulled automatically):
  * - python:3.9-slim
  * - openjdk:17-slim
@@ -27,11 +36,17 @@ import java.util.concurrent.*;
  */
 @Service
 @Slf4j
+@RequiredArgsConstructor
 @ConditionalOnProperty(name = "executor.mode", havingValue = "docker")
 public class DockerCodeExecutor implements CodeExecutor {
 
-    private static final String TEMP_DIR = System.getProperty("java.io.tmpdir") + File.separator + "onlinejudge-docker";
-    private static final boolean IS_WINDOWS = System.getProperty("os.name").toLowerCase().contains("win");
+    private static final int COMPILE_MEMORY_LIMIT_KB = 512 * 1024;
+    // Compiler output and runtime stderr are kept for display only, so cap them well below the output limit
+    private static final long STDERR_LIMIT_BYTES = 64 * 1024;
+    private static final long AVAILABILITY_TTL_MS = 30_000;
+    // Exit code of a program killed for writing past ulimit -f
+    private static final int SIGXFSZ_EXIT_CODE = 128 + 25;
+    private static final boolean IS_POSIX = FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
 
     // Language configuration for Docker execution
     private static final Map<Integer, DockerLanguageConfig> LANGUAGES = Map.of(
@@ -42,215 +57,530 @@ public class DockerCodeExecutor implements CodeExecutor {
             50, new DockerLanguageConfig("c", "c", "gcc:13", "gcc -o /code/a.out /code/solution.c", "/code/a.out")
     );
 
+    private final CompilationCache compilationCache;
+    private final DockerContainerPool containerPool;
+    private final ProcessStreamPump streamPump;
+    private final WorkspaceManager workspaceManager;
+
+    @Value("${judge.time.wall-factor:3}")
+    private double wallTimeFactor;
+
+    @Value("${docker.batch.enabled:true}")
+    private boolean batchEnabled;
+
+    private volatile boolean available;
+    private volatile long availabilityCheckedAt;
+
     @Override
     public String getExecutorType() {
         return "DOCKER";
     }
 
+    @PostConstruct
+    public void init() {
+        if (containerPool.isEnabled() && isAvailable()) {
+            containerPool.start(LANGUAGES.values().stream().map(DockerLanguageConfig::image).distinct().toList());
+        }
+    }
+
     @Override
     public boolean isAvailable() {
+        // "docker info" is slow, so reuse the answer for a while
+        long now = System.currentTimeMillis();
+        if (now - availabilityCheckedAt < AVAILABILITY_TTL_MS) {
+            return available;
+        }
         try {
             ProcessBuilder pb = new ProcessBuilder("docker", "info");
+            pb.redirectErrorStream(true);
+            pb.redirectOutput(ProcessBuilder.Redirect.DISCARD);
             Process process = pb.start();
             boolean completed = process.waitFor(5, TimeUnit.SECONDS);
-            return completed && process.exitValue() == 0;
+            available = completed && process.exitValue() == 0;
         } catch (Exception e) {
             log.warn("Docker is not available: {}", e.getMessage());
-            return false;
+            available = false;
         }
+        availabilityCheckedAt = now;
+        return available;
     }
 
     @Override
-    public ExecutionResult execute(String sourceCode, int languageId, String stdin, 
-                                    int timeLimitMs, int memoryLimitKb) {
+    public CompiledProgram compile(String sourceCode, int languageId) {
         DockerLanguageConfig config = LANGUAGES.get(languageId);
         if (config == null) {
-            return ExecutionResult.error("Unsupported language ID: " + languageId);
+            return CompiledProgram.failed(languageId, ExecutionResult.error("Unsupported language ID: " + languageId));
         }
 
         if (!isAvailable()) {
-            return ExecutionResult.error("Docker is not available. Please install Docker or switch to local execution mode.");
+            return CompiledProgram.failed(languageId, ExecutionResult.error(
+                    "Docker is not available. Please install Docker or switch to local execution mode."));
         }
 
-        String executionId = UUID.randomUUID().toString().substring(0, 8);
-        Path workDir = Paths.get(TEMP_DIR, executionId);
+        WorkspaceManager.Workspace workspace;
+        try {
+            workspace = workspaceManager.acquire();
+        } catch (IOException e) {
+            log.warn("No workspace for compilation: {}", e.getMessage());
+            return CompiledProgram.failed(languageId, ExecutionResult.error("Docker execution failed: " + e.getMessage()));
+        }
+        Path workDir = workspace.getPath();
         
         try {
-            // Create work directory
-            Files.createDirectories(workDir);
-            
             // Write source code to file
             String filename = config.language.equals("java") ? "Main." + config.extension : "solution." + config.extension;
             Path sourceFile = workDir.resolve(filename);
             Files.writeString(sourceFile, sourceCode);
-
-            // Write stdin to file if provided
-            Path stdinFile = workDir.resolve("stdin.txt");
-            Files.writeString(stdinFile, stdin != null ? stdin : "");
             
             long startTime = System.currentTimeMillis();
             
-            // Compile if needed (inside container)
-            if (config.compileCommand != null) {
+            // Compile if needed (inside container), unless the same source was compiled before.
+            // The image is part of the key since it pins the compiler version.
+            String cacheKey = config.compileCommand != null
+                    ? compilationCache.key(sourceCode, languageId, config.image + " " + config.compileCommand) : null;
+            if (cacheKey != null && !compilationCache.restore(cacheKey, workDir)) {
                 ExecutionResult compileResult = runDocker(
                         config.image, 
                         workDir, 
                         config.compileCommand,
                         null,
+                        0,
                         30000, // 30 second compile timeout
-                        memoryLimitKb
+                        COMPILE_MEMORY_LIMIT_KB,
+                        STDERR_LIMIT_BYTES,
+                        true
                 );
                 
                 if (compileResult.exitCode != 0) {
-                    return ExecutionResult.compilationError(compileResult.stderr);
+                    workspace.close();
+                    return CompiledProgram.failed(languageId, ExecutionResult.compilationError(compileResult.stderr));
                 }
+                compilationCache.store(cacheKey, workDir, List.of(filename));
             }
             
-            // Execute
-            ExecutionResult result = runDocker(
-                    config.image,
-                    workDir,
-                    config.runCommand,
-                    stdinFile,
-                    timeLimitMs,
-                    memoryLimitKb
-            );
-            result.executionTimeMs = System.currentTimeMillis() - startTime;
-            
-            return result;
+            return CompiledProgram.ready(languageId, workDir, System.currentTimeMillis() - startTime,
+                    workspace::close);
             
         } catch (Exception e) {
-            log.error("Docker execution failed", e);
-            return ExecutionResult.error("Docker execution failed: " + e.getMessage());
-        } finally {
-            // Cleanup
+            log.error("Docker compilation failed", e);
+            workspace.close();
+            return CompiledProgram.failed(languageId, ExecutionResult.error("Docker execution failed: " + e.getMessage()));
+        }
+    }
+
+    @Override
+    public ExecutionResult run(CompiledProgram program, Path stdinFile, int timeLimitMs, int memoryLimitKb,
+                               int outputLimitKb) {
+        DockerLanguageConfig config = LANGUAGES.get(program.getLanguageId());
+        if (config == null || !program.isSuccessful()) {
+            return ExecutionResult.error("Program is not ready to run");
+        }
+
+        return runDocker(
+                config.image,
+                program.getWorkDir(),
+                config.runCommand,
+                stdinFile,
+                timeLimitMs,
+                wallLimitMs(timeLimitMs),
+                memoryLimitKb,
+                outputLimitKb * 1024L,
+                false
+        );
+    }
+
+    @Override
+    public boolean supportsBatch() {
+        return batchEnabled;
+    }
+
+    /**
+     * Run all inputs in one container with {@link BatchScript}, so the container start
+     * (or docker exec) is paid once per submission instead of once per test case.
+     */
+    @Override
+    public List<ExecutionResult> runBatch(CompiledProgram program, List<Path> stdinFiles, int timeLimitMs,
+                                          int memoryLimitKb, int outputLimitKb, boolean stopOnFailure) {
+        DockerLanguageConfig config = LANGUAGES.get(program.getLanguageId());
+        if (config == null || !program.isSuccessful()) {
+            return List.of(ExecutionResult.error("Program is not ready to run"));
+        }
+
+        int memoryMb = Math.max(32, memoryLimitKb / 1024);
+        int wallLimitMs = wallLimitMs(timeLimitMs);
+        long outputLimitBytes = outputLimitKb * 1024L;
+        // Every test may use its full wall limit, plus a margin for the runner itself
+        int batchTimeoutMs = (int) Math.min(Integer.MAX_VALUE, stdinFiles.size() * (wallLimitMs + 1000L) + 10_000);
+
+        if (!containerPool.isEnabled()) {
+            Path workDir = program.getWorkDir();
+            // The runner makes /code sticky; put the workspace back as it was for its next use
+            Set<PosixFilePermission> workDirMode = null;
+            String name = "oj-batch-" + UUID.randomUUID().toString().substring(0, 8);
+            boolean started = false;
+            boolean clean = false;
             try {
-                deleteDirectory(workDir);
+                if (IS_POSIX) {
+                    workDirMode = Files.getPosixFilePermissions(workDir);
+                }
+                Path batchDir = BatchScript.prepare(workDir, stdinFiles, config.runCommand, containerPool.getUser(),
+                        wallLimitMs, outputLimitBytes, stopOnFailure);
+                List<String> args = new ArrayList<>(List.of("docker", "run", "--rm", "--name", name,
+                        "--network", "none", "--memory=" + memoryMb + "m", "--cpus=0.5"));
+                // Locked down like pooled containers; the runner is root and starts the programs as the pool user
+                args.addAll(containerPool.lockdownArgs());
+                args.addAll(List.of("-v", DockerContainerPool.toVolumePath(workDir) + ":/code:rw",
+                        config.image, "sh", "-c", BatchScript.command()));
+                started = true;
+                ExecutionResult runner = runDockerProcess(args, null, batchTimeoutMs, STDERR_LIMIT_BYTES);
+                clean = runner.status == ExecutionResult.ResultStatus.SUCCESS && runner.exitCode == 0;
+                if (!clean) {
+                    // Killing the client leaves the container running; stop it before reading the results
+                    containerPool.remove(name);
+                }
+                return collectBatch(runner, batchDir, stdinFiles.size(), timeLimitMs, outputLimitBytes);
             } catch (IOException e) {
-                log.warn("Failed to cleanup temp directory: {}", workDir);
+                log.error("Docker batch run failed", e);
+                return List.of(ExecutionResult.error("Docker process failed: " + e.getMessage()));
+            } finally {
+                if (started && !clean) {
+                    // The runner may have died before handing the directory back, leaving it owned by root
+                    containerPool.deleteAsRoot(config.image, workDir, BatchScript.DIR);
+                }
+                cleanup(workDir.resolve(BatchScript.DIR));
+                restoreMode(workDir, workDirMode);
             }
         }
+
+        DockerContainerPool.PooledContainer container;
+        try {
+            container = containerPool.acquire(config.image);
+        } catch (IOException e) {
+            log.error("Failed to acquire container for {}", config.image, e);
+            return List.of(ExecutionResult.error("Docker process failed: " + e.getMessage()));
+        }
+
+        boolean clean = false;
+        try {
+            containerPool.applyMemoryLimit(container, memoryMb);
+            copyFiles(program.getWorkDir(), container.getHostDir());
+            Path batchDir = BatchScript.prepare(container.getHostDir(), stdinFiles, config.runCommand,
+                    containerPool.getUser(), wallLimitMs, outputLimitBytes, stopOnFailure);
+            // The runner is root so it can keep the results from the programs it starts
+            ExecutionResult runner = runDockerProcess(
+                    List.of("docker", "exec", "--user", "0", container.getName(), "sh", "-c", BatchScript.command()),
+                    null, batchTimeoutMs, STDERR_LIMIT_BYTES);
+            // The runner kills every process of the program user after each test, so only a failed runner
+            // leaves strays
+            clean = runner.status == ExecutionResult.ResultStatus.SUCCESS && runner.exitCode == 0;
+            return collectBatch(runner, batchDir, stdinFiles.size(), timeLimitMs, outputLimitBytes);
+        } catch (IOException e) {
+            log.error("Docker batch exec failed", e);
+            return List.of(ExecutionResult.error("Docker process failed: " + e.getMessage()));
+        } finally {
+            containerPool.release(container, clean);
+        }
     }
 
-    private ExecutionResult runDocker(String image, Path workDir, String command, 
-                                       Path stdinFile, int timeoutMs, int memoryLimitKb) {
+    /**
+     * Turn the per-test files left by the runner into results, the same way a single run is judged.
+     */
+    private List<ExecutionResult> collectBatch(ExecutionResult runner, Path batchDir, int count, int cpuLimitMs,
+                                               long outputLimitBytes) throws IOException {
+        List<ExecutionResult> results = new ArrayList<>();
+        for (int number = 1; number <= count; number++) {
+            int exitCode = BatchScript.exitCode(batchDir, number);
+            if (exitCode < 0) {
+                break;
+            }
+            long cpuTimeMs = CpuTimes.readAndDelete(BatchScript.timesFile(batchDir, number));
+            String stderr = BatchScript.read(batchDir, number, "err", STDERR_LIMIT_BYTES);
+
+            ExecutionResult result;
+            if (BatchScript.timedOut(batchDir, number) || (cpuLimitMs > 0 && cpuTimeMs > cpuLimitMs)) {
+                result = ExecutionResult.timeLimitExceeded();
+            } else if (BatchScript.outputSize(batchDir, number) > outputLimitBytes || exitCode == SIGXFSZ_EXIT_CODE) {
+                result = ExecutionResult.outputLimitExceeded();
+            } else if (exitCode == 137) {
+                // Killed, and not by the runner's wall limit: the container's OOM killer
+                result = ExecutionResult.memoryLimitExceeded(0);
+            } else if (exitCode != 0 && !stderr.isEmpty()) {
+                result = ExecutionResult.runtimeError(stderr, exitCode);
+            } else {
+                result = new ExecutionResult(BatchScript.readBytes(batchDir, number, "out", outputLimitBytes),
+                        stderr, exitCode, 0);
+            }
+            result.executionTimeMs = Math.max(0, cpuTimeMs);
+            results.add(result);
+        }
+
+        if (runner.status != ExecutionResult.ResultStatus.SUCCESS || runner.exitCode != 0) {
+            // The runner itself died (e.g. its overall timeout); the tests it did not finish have no result
+            if (results.size() < count) {
+                results.add(ExecutionResult.error("Batch runner failed: "
+                        + (runner.errorMessage != null ? runner.errorMessage : runner.status)));
+            }
+        }
+        return results;
+    }
+
+    private int wallLimitMs(int timeLimitMs) {
+        return (int) Math.min(Integer.MAX_VALUE, (long) (timeLimitMs * wallTimeFactor));
+    }
+
+    private void restoreMode(Path dir, Set<PosixFilePermission> mode) {
+        if (mode == null) {
+            return;
+        }
         try {
-            // Calculate memory limit in MB (minimum 32MB)
-            int memoryMb = Math.max(32, memoryLimitKb / 1024);
-            
-            // Get absolute path in Docker-compatible format
-            String volumePath = workDir.toAbsolutePath().toString();
-            if (IS_WINDOWS) {
-                // Convert Windows path (C:\path) to Docker path (/c/path)
-                volumePath = convertWindowsPathForDocker(volumePath);
+            // Also clears the sticky bit, which the permission set cannot express
+            Files.setPosixFilePermissions(dir, mode);
+        } catch (IOException e) {
+            log.warn("Failed to restore the mode of {}: {}", dir, e.getMessage());
+        }
+    }
+
+    private void cleanup(Path workDir) {
+        try {
+            deleteDirectory(workDir);
+        } catch (IOException e) {
+            log.warn("Failed to cleanup temp directory: {}", workDir);
+        }
+    }
+
+    /**
+     * @param cpuLimitMs CPU time limit deciding TIME_LIMIT_EXCEEDED, or 0 for none (compilers)
+     * @param wallLimitMs Wall-clock limit after which the container command is killed
+     */
+    private ExecutionResult runDocker(String image, Path workDir, String command, 
+                                       Path stdinFile, int cpuLimitMs, int wallLimitMs, int memoryLimitKb,
+                                       long outputLimitBytes, boolean collectArtifacts) {
+        // Calculate memory limit in MB (minimum 32MB)
+        int memoryMb = Math.max(32, memoryLimitKb / 1024);
+        
+        // The shell in the container records the CPU time in the mounted workspace. A program's CPU time
+        // decides its verdict, so its shell runs as root and starts the program as the pool user, keeping
+        // the times where the program cannot write; compilers are the judge's own and only timed.
+        boolean asUser = cpuLimitMs > 0;
+        String timesName = ".times-" + UUID.randomUUID().toString().substring(0, 8);
+        String timesPath = asUser ? timesName + "/" + CpuTimes.TIMES_FILE : timesName;
+        String timedCommand = asUser
+                ? CpuTimes.wrapAsUser(command, containerPool.getUser(), "/code/" + timesName, containerPool.isEnabled())
+                : CpuTimes.wrap(command, "/code/" + timesName);
+        
+        if (containerPool.isEnabled()) {
+            return runPooled(image, workDir, timedCommand, asUser, timesPath, stdinFile, cpuLimitMs, wallLimitMs,
+                    memoryMb, outputLimitBytes, collectArtifacts);
+        }
+        
+        // Build docker command arguments
+        String name = "oj-run-" + UUID.randomUUID().toString().substring(0, 8);
+        List<String> dockerArgs = new ArrayList<>();
+        dockerArgs.add("docker");
+        dockerArgs.add("run");
+        dockerArgs.add("--rm");
+        dockerArgs.add("--name");
+        dockerArgs.add(name);
+        dockerArgs.add("--network");
+        dockerArgs.add("none");
+        dockerArgs.add("--memory=" + memoryMb + "m");
+        dockerArgs.add("--cpus=0.5");
+        dockerArgs.add("-v");
+        dockerArgs.add(DockerContainerPool.toVolumePath(workDir) + ":/code:rw");
+        
+        // If we have stdin, pipe it in
+        if (stdinFile != null) {
+            dockerArgs.add("-i");
+        }
+        
+        dockerArgs.add(image);
+        dockerArgs.add("sh");
+        dockerArgs.add("-c");
+        dockerArgs.add(timedCommand);
+        
+        long startTime = System.currentTimeMillis();
+        ExecutionResult result = runDockerProcess(dockerArgs, stdinFile, wallLimitMs, outputLimitBytes);
+        if (clientKilled(result)) {
+            // Killing the client leaves the container running, and its times directory owned by root
+            containerPool.remove(name);
+            if (asUser) {
+                containerPool.deleteAsRoot(image, workDir, timesName);
             }
+        }
+        result = applyCpuTime(result, workDir.resolve(timesPath), cpuLimitMs, startTime);
+        if (asUser) {
+            cleanup(workDir.resolve(timesName));
+        }
+        return result;
+    }
+
+    /**
+     * True if {@link #runDockerProcess} killed the docker client (time limit, output limit, cancellation)
+     * instead of seeing it exit with its command. The command in the container is still running then.
+     */
+    private static boolean clientKilled(ExecutionResult result) {
+        return switch (result.status) {
+            case TIME_LIMIT_EXCEEDED, OUTPUT_LIMIT_EXCEEDED, INTERNAL_ERROR -> true;
+            default -> false;
+        };
+    }
+
+    /**
+     * Report the CPU time recorded by the container shell, and turn a run over the CPU limit into
+     * TIME_LIMIT_EXCEEDED. Falls back to wall-clock time when the program was killed before it was recorded.
+     */
+    private ExecutionResult applyCpuTime(ExecutionResult result, Path timesFile, int cpuLimitMs, long startTime) {
+        long cpuTimeMs = CpuTimes.readAndDelete(timesFile);
+        if (cpuTimeMs < 0) {
+            result.executionTimeMs = System.currentTimeMillis() - startTime;
+            return result;
+        }
+        if (cpuLimitMs > 0 && cpuTimeMs > cpuLimitMs
+                && result.status != ExecutionResult.ResultStatus.TIME_LIMIT_EXCEEDED) {
+            result = ExecutionResult.timeLimitExceeded();
+        }
+        result.executionTimeMs = cpuTimeMs;
+        return result;
+    }
+
+    /**
+     * Run the command with docker exec in a warm container from the pool.
+     * The workspace is copied into the container's mount first; after a compile the
+     * produced artifacts are copied back so later runs (in any container) can use them.
+     *
+     * @param asRoot Whether the command is a root shell that starts the program as the pool user itself
+     * @param timesFile Times file written by the command, relative to /code
+     */
+    private ExecutionResult runPooled(String image, Path workDir, String command, boolean asRoot, String timesFile,
+                                      Path stdinFile, int cpuLimitMs, int wallLimitMs, int memoryMb,
+                                      long outputLimitBytes, boolean collectArtifacts) {
+        DockerContainerPool.PooledContainer container;
+        try {
+            container = containerPool.acquire(image);
+        } catch (IOException e) {
+            log.error("Failed to acquire container for {}", image, e);
+            return ExecutionResult.error("Docker process failed: " + e.getMessage());
+        }
+        
+        boolean clean = false;
+        try {
+            containerPool.applyMemoryLimit(container, memoryMb);
+            copyFiles(workDir, container.getHostDir());
             
-            // Build docker command arguments
             List<String> dockerArgs = new ArrayList<>();
             dockerArgs.add("docker");
-            dockerArgs.add("run");
-            dockerArgs.add("--rm");
-            dockerArgs.add("--network");
-            dockerArgs.add("none");
-            dockerArgs.add("--memory=" + memoryMb + "m");
-            dockerArgs.add("--cpus=0.5");
-            dockerArgs.add("-v");
-            dockerArgs.add(volumePath + ":/code:rw");
-            
-            // If we have stdin, pipe it in
-            if (stdinFile != null && Files.exists(stdinFile)) {
+            dockerArgs.add("exec");
+            if (stdinFile != null) {
                 dockerArgs.add("-i");
             }
-            
-            dockerArgs.add(image);
+            if (asRoot) {
+                dockerArgs.add("--user");
+                dockerArgs.add("0");
+            }
+            dockerArgs.add(container.getName());
             dockerArgs.add("sh");
             dockerArgs.add("-c");
             dockerArgs.add(command);
             
-            ProcessBuilder pb = new ProcessBuilder(dockerArgs);
-            pb.redirectErrorStream(false);
+            long startTime = System.currentTimeMillis();
+            ExecutionResult result = runDockerProcess(dockerArgs, stdinFile, wallLimitMs, outputLimitBytes);
             
-            Process process = pb.start();
+            // A killed exec leaves the program running inside the container
+            clean = !clientKilled(result);
+            
+            result = applyCpuTime(result, container.getHostDir().resolve(timesFile), cpuLimitMs, startTime);
+            if (collectArtifacts && result.exitCode == 0) {
+                copyFiles(container.getHostDir(), workDir);
+            }
+            return result;
             
-            // Pipe stdin if provided
-            if (stdinFile != null && Files.exists(stdinFile)) {
-                try (OutputStream os = process.getOutputStream()) {
-                    Files.copy(stdinFile, os);
-                    os.flush();
+        } catch (IOException e) {
+            log.error("Docker exec failed", e);
+            return ExecutionResult.error("Docker process failed: " + e.getMessage());
+        } finally {
+            containerPool.release(container, clean);
+        }
+    }
+
+    private void copyFiles(Path from, Path to) throws IOException {
+        try (Stream<Path> files = Files.list(from)) {
+            for (Path file : files.toList()) {
+                if (Files.isRegularFile(file)) {
+                    Files.copy(file, to.resolve(file.getFileName()),
+                            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
                 }
-            } else {
-                process.getOutputStream().close();
+            }
+        }
+    }
+
+    private ExecutionResult runDockerProcess(List<String> dockerArgs, Path stdinFile, int timeoutMs,
+                                             long outputLimitBytes) {
+        Process running = null;
+        ProcessStreamPump.Session session = null;
+        try {
+            ProcessBuilder pb = new ProcessBuilder(dockerArgs);
+            pb.redirectErrorStream(false);
+            if (stdinFile != null) {
+                // docker -i forwards the file to the program in the container
+                pb.redirectInput(stdinFile.toFile());
             }
             
-            // Read stdout and stderr with timeout
-            ExecutorService executor = Executors.newFixedThreadPool(2);
-            Future<String> stdoutFuture = executor.submit(() -> readStream(process.getInputStream()));
-            Future<String> stderrFuture = executor.submit(() -> readStream(process.getErrorStream()));
+            Process process = pb.start();
+            running = process;
+            
+            // Read stdout/stderr concurrently; stdout past the output limit kills the process
+            OutputCapture stdoutCapture = new OutputCapture(outputLimitBytes, () -> ProcessStreamPump.destroyTree(process));
+            OutputCapture stderrCapture = OutputCapture.truncating(STDERR_LIMIT_BYTES);
+            session = streamPump.attach(process, stdoutCapture, stderrCapture);
             
             boolean completed = process.waitFor(timeoutMs + 2000, TimeUnit.MILLISECONDS); // Extra time for Docker overhead
             
             if (!completed) {
-                process.destroyForcibly();
-                executor.shutdownNow();
+                session.abort();
                 return ExecutionResult.timeLimitExceeded();
             }
             
-            String stdout = stdoutFuture.get(2, TimeUnit.SECONDS);
-            String stderr = stderrFuture.get(2, TimeUnit.SECONDS);
-            executor.shutdown();
+            session.await(2000);
+            String stderr = stderrCapture.toString();
+            
+            if (stdoutCapture.isLimitExceeded()) {
+                return ExecutionResult.outputLimitExceeded();
+            }
             
             int exitCode = process.exitValue();
             
             // Check for OOM killed
             if (stderr.contains("Killed") || exitCode == 137) {
-                ExecutionResult r = new ExecutionResult("", "Memory limit exceeded", 137, 0);
-                r.status = ExecutionResult.ResultStatus.MEMORY_LIMIT_EXCEEDED;
-                return r;
+                return ExecutionResult.memoryLimitExceeded(0);
             }
             
             if (exitCode != 0 && !stderr.isEmpty()) {
                 return ExecutionResult.runtimeError(stderr, exitCode);
             }
             
-            return new ExecutionResult(stdout, stderr, exitCode, 0);
+            return new ExecutionResult(stdoutCapture.toByteArray(), stderr, exitCode, 0);
             
         } catch (TimeoutException e) {
+            session.abort();
             return ExecutionResult.timeLimitExceeded();
+        } catch (InterruptedException e) {
+            // Cancelled by the judge (e.g. an earlier test already failed)
+            if (session != null) {
+                session.abort();
+            } else if (running != null) {
+                ProcessStreamPump.destroyTree(running);
+            }
+            Thread.currentThread().interrupt();
+            return ExecutionResult.error("Execution cancelled");
         } catch (Exception e) {
+            if (running != null) {
+                ProcessStreamPump.destroyTree(running);
+            }
             log.error("Docker process failed", e);
             return ExecutionResult.error("Docker process failed: " + e.getMessage());
         }
     }
 
-    /**
-     * Convert Windows path (C:\Users\...) to Docker-compatible path (/c/Users/...)
-     * This is needed for Docker on Windows with Git Bash or WSL.
-     */
-    private String convertWindowsPathForDocker(String windowsPath) {
-        // Replace backslashes with forward slashes
-        String path = windowsPath.replace("\\", "/");
-        
-        // Convert drive letter (C:) to lowercase mount (/c)
-        if (path.length() >= 2 && path.charAt(1) == ':') {
-            char driveLetter = Character.toLowerCase(path.charAt(0));
-            path = "/" + driveLetter + path.substring(2);
-        }
-        
-        return path;
-    }
-
-    private String readStream(InputStream is) throws IOException {
-        StringBuilder sb = new StringBuilder();
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(is))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (sb.length() > 0) sb.append("\n");
-                sb.append(line);
-            }
-        }
-        return sb.toString();
-    }
-
     private void deleteDirectory(Path path) throws IOException {
         if (Files.exists(path)) {
             Files.walk(path)
@@ -0,0 +1,389 @@
+package com.onlinejudge.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Pool of pre-started containers, one set per language image.
+ * Commands run through {@code docker exec} in an idle container instead of paying for a
+ * cold {@code docker run} each time. Containers are reset after every use and replaced
+ * after {@code docker.pool.max-uses} uses, or immediately if a run left them in an unknown state.
+ *
+ * Each container has its own host directory mounted at /code, so submissions never share a mount.
+ * Since a container outlives the submissions it runs, commands run as an unprivileged user
+ * ({@code docker.pool.user}) with a read-only root filesystem, no capabilities and a process limit:
+ * a program can change nothing but /code and /tmp, which are wiped between uses. Only the root
+ * commands of the judge itself (the {@link BatchScript} runner and resets) keep the few capabilities
+ * they need to start programs as that user and to clean up after them.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "executor.mode", havingValue = "docker")
+public class DockerContainerPool {
+
+    private static final String TEMP_DIR = System.getProperty("java.io.tmpdir") + File.separator + "onlinejudge-docker-pool";
+    private static final boolean IS_WINDOWS = System.getProperty("os.name").toLowerCase().contains("win");
+    private static final String POOL_LABEL = "onlinejudge.pool=true";
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${docker.pool.enabled:true}")
+    private boolean enabled;
+
+    @Value("${docker.pool.size-per-image:2}")
+    private int sizePerImage;
+
+    @Value("${docker.pool.max-uses:50}")
+    private int maxUses;
+
+    @Value("${docker.pool.memory-mb:512}")
+    private int defaultMemoryMb;
+
+    @Value("${docker.pool.user:nobody}")
+    private String user;
+
+    @Value("${docker.pool.pids-limit:256}")
+    private int pidsLimit;
+
+    @Value("${docker.pool.tmp-size-mb:64}")
+    private int tmpSizeMb;
+
+    private final Map<String, BlockingDeque<PooledContainer>> idle = new ConcurrentHashMap<>();
+    private final Set<PooledContainer> all = ConcurrentHashMap.newKeySet();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    // Resets, recycling and warm-up happen off the judging path
+    private final ExecutorService maintenance = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "docker-pool-maintenance");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Remove containers left over from a previous run and start warming the pool for the given images.
+     */
+    public void start(Collection<String> images) {
+        if (!enabled) {
+            return;
+        }
+        Gauge.builder("judge.docker.pool.size", all, Set::size)
+                .description("Containers owned by the pool")
+                .register(meterRegistry);
+        Gauge.builder("judge.docker.pool.warm", this, DockerContainerPool::getWarmCount)
+                .description("Idle containers ready for docker exec")
+                .register(meterRegistry);
+        Gauge.builder("judge.docker.pool.hit.rate", this, DockerContainerPool::getHitRate)
+                .description("Share of acquisitions served by a warm container")
+                .register(meterRegistry);
+
+        maintenance.submit(() -> {
+            removeOrphans();
+            for (String image : images) {
+                BlockingDeque<PooledContainer> deque = idle.computeIfAbsent(image, k -> new LinkedBlockingDeque<>());
+                for (int i = deque.size(); i < sizePerImage; i++) {
+                    try {
+                        deque.offer(create(image));
+                    } catch (IOException e) {
+                        log.warn("Failed to pre-start container for {}: {}", image, e.getMessage());
+                        break;
+                    }
+                }
+            }
+            log.info("Docker container pool warmed: {} containers", all.size());
+        });
+    }
+
+    /**
+     * Take a container for the given image, starting a cold one if none is warm.
+     */
+    public PooledContainer acquire(String image) throws IOException {
+        PooledContainer container = idle.computeIfAbsent(image, k -> new LinkedBlockingDeque<>()).poll();
+        if (container != null) {
+            hits.incrementAndGet();
+            return container;
+        }
+        misses.incrementAndGet();
+        return create(image);
+    }
+
+    /**
+     * Return a container after use.
+     *
+     * @param clean false if the run was killed or timed out, so stray processes may still be alive
+     */
+    public void release(PooledContainer container, boolean clean) {
+        int uses = container.uses.incrementAndGet();
+        maintenance.submit(() -> {
+            BlockingDeque<PooledContainer> deque = idle.computeIfAbsent(container.image, k -> new LinkedBlockingDeque<>());
+            boolean reusable = clean && uses < maxUses && deque.size() < sizePerImage && reset(container);
+            if (reusable) {
+                deque.offer(container);
+                return;
+            }
+            destroy(container);
+            if (deque.size() < sizePerImage) {
+                try {
+                    deque.offer(create(container.image));
+                } catch (IOException e) {
+                    log.warn("Failed to replace container for {}: {}", container.image, e.getMessage());
+                }
+            }
+        });
+    }
+
+    /**
+     * Apply the memory limit for the next command, updating the container only when it changes.
+     */
+    public void applyMemoryLimit(PooledContainer container, int memoryMb) throws IOException {
+        if (container.memoryMb == memoryMb) {
+            return;
+        }
+        String limit = memoryMb + "m";
+        if (docker(List.of("docker", "update", "--memory=" + limit, "--memory-swap=" + limit, container.name), 10) != 0) {
+            throw new IOException("Failed to update memory limit of " + container.name);
+        }
+        container.memoryMb = memoryMb;
+    }
+
+    /**
+     * User that compilers and programs run as.
+     */
+    public String getUser() {
+        return user;
+    }
+
+    public int getSize() {
+        return all.size();
+    }
+
+    public int getWarmCount() {
+        return idle.values().stream().mapToInt(BlockingDeque::size).sum();
+    }
+
+    public double getHitRate() {
+        long total = hits.get() + misses.get();
+        return total == 0 ? 0.0 : (double) hits.get() / total;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        maintenance.shutdownNow();
+        for (PooledContainer container : new ArrayList<>(all)) {
+            destroy(container);
+        }
+    }
+
+    private PooledContainer create(String image) throws IOException {
+        String name = "oj-pool-" + UUID.randomUUID().toString().substring(0, 8);
+        Path hostDir = Paths.get(TEMP_DIR, name);
+        Files.createDirectories(hostDir);
+        if (!IS_WINDOWS) {
+            // Compilers write their output here as the container user
+            Files.setPosixFilePermissions(hostDir, PosixFilePermissions.fromString("rwxrwxrwx"));
+        }
+
+        String memory = defaultMemoryMb + "m";
+        List<String> args = new ArrayList<>(List.of(
+                "docker", "run", "-d",
+                "--name", name,
+                "--label", POOL_LABEL,
+                "--network", "none",
+                "--memory=" + memory,
+                "--memory-swap=" + memory,
+                "--cpus=0.5",
+                "--user", user));
+        args.addAll(lockdownArgs());
+        args.addAll(List.of(
+                "-v", toVolumePath(hostDir) + ":/code:rw",
+                image,
+                "tail", "-f", "/dev/null"));
+        if (docker(args, 120) != 0) {
+            throw new IOException("Failed to start container from " + image);
+        }
+
+        PooledContainer container = new PooledContainer(name, image, hostDir, defaultMemoryMb);
+        all.add(container);
+        return container;
+    }
+
+    /**
+     * docker run flags that lock a container down: read-only root filesystem, small tmpfs at /tmp, a process
+     * limit and only the capabilities the judge's root commands need. Also used for cold batch runners.
+     */
+    List<String> lockdownArgs() {
+        return List.of(
+                "--pids-limit=" + pidsLimit,
+                "--read-only",
+                "--tmpfs", "/tmp:rw,nosuid,nodev,noexec,size=" + tmpSizeMb + "m",
+                "--cap-drop", "ALL",
+                "--cap-add", "CHOWN", "--cap-add", "DAC_OVERRIDE", "--cap-add", "FOWNER",
+                "--cap-add", "KILL", "--cap-add", "SETUID", "--cap-add", "SETGID",
+                "--security-opt", "no-new-privileges",
+                "-e", "HOME=/tmp");
+    }
+
+    /**
+     * Remove a container that is not part of the pool, e.g. a cold one whose client was killed.
+     */
+    void remove(String name) {
+        if (docker(List.of("docker", "rm", "-f", name), 30) != 0) {
+            log.warn("Failed to remove container {}", name);
+        }
+    }
+
+    /**
+     * Delete a directory a root process in a container left in {@code hostDir}, which the judge itself
+     * may not have the rights to delete.
+     */
+    void deleteAsRoot(String image, Path hostDir, String dirName) {
+        if (docker(List.of("docker", "run", "--rm", "--network", "none",
+                "-v", toVolumePath(hostDir) + ":/code:rw", image, "rm", "-rf", "/code/" + dirName), 60) != 0) {
+            log.warn("Failed to remove {} from {}", dirName, hostDir);
+        }
+    }
+
+    private boolean reset(PooledContainer container) {
+        // Kill anything the last program left behind (PID 1 is spared) and wipe the only writable places
+        return docker(List.of("docker", "exec", "--user", "0", container.name, "sh", "-c",
+                "kill -9 -1 2>/dev/null; rm -rf /code/* /code/.[!.]* /tmp/* 2>/dev/null; true"), 10) == 0;
+    }
+
+    private void destroy(PooledContainer container) {
+        all.remove(container);
+        docker(List.of("docker", "rm", "-f", container.name), 30);
+        // The last program may have left anything in it
+        try (Stream<Path> paths = Files.walk(container.hostDir)) {
+            paths.sorted((a, b) -> b.compareTo(a)).forEach(path -> {
+                try {
+                    Files.delete(path);
+                } catch (IOException e) {
+                    log.debug("Failed to delete {}", path);
+                }
+            });
+        } catch (IOException e) {
+            log.debug("Failed to delete pool directory {}", container.hostDir);
+        }
+    }
+
+    private void removeOrphans() {
+        try {
+            Process process = new ProcessBuilder("docker", "ps", "-aq", "--filter", "label=" + POOL_LABEL)
+                    .redirectErrorStream(true)
+                    .start();
+            String ids = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8).trim();
+            process.waitFor(30, TimeUnit.SECONDS);
+            if (!ids.isEmpty()) {
+                List<String> args = new ArrayList<>(List.of("docker", "rm", "-f"));
+                args.addAll(List.of(ids.split("\\s+")));
+                docker(args, 60);
+                log.info("Removed {} orphaned pool containers", args.size() - 3);
+            }
+        } catch (Exception e) {
+            log.warn("Failed to remove orphaned pool containers: {}", e.getMessage());
+        }
+    }
+
+    private int docker(List<String> args, int timeoutSeconds) {
+        try {
+            Process process = new ProcessBuilder(args)
+                    .redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+            if (!process.waitFor(timeoutSeconds, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+                return -1;
+            }
+            return process.exitValue();
+        } catch (IOException e) {
+            log.warn("{} failed: {}", String.join(" ", args.subList(0, 2)), e.getMessage());
+            return -1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return -1;
+        }
+    }
+
+    /**
+     * Absolute host path in the form Docker expects for a bind mount.
+     * On Windows, C:\Users\... becomes /c/Users/... (Docker with Git Bash or WSL).
+     */
+    static String toVolumePath(Path path) {
+        String volumePath = path.toAbsolutePath().toString();
+        if (!IS_WINDOWS) {
+            return volumePath;
+        }
+        // Replace backslashes with forward slashes
+        volumePath = volumePath.replace("\\", "/");
+
+        // Convert drive letter (C:) to lowercase mount (/c)
+        if (volumePath.length() >= 2 && volumePath.charAt(1) == ':') {
+            char driveLetter = Character.toLowerCase(volumePath.charAt(0));
+            volumePath = "/" + driveLetter + volumePath.substring(2);
+        }
+        return volumePath;
+    }
+
+    /**
+     * A running container owned by the pool.
+     */
+    public static class PooledContainer {
+        private final String name;
+        private final String image;
+        private final Path hostDir;
+        private final AtomicInteger uses = new AtomicInteger();
+        private volatile int memoryMb;
+
+        PooledContainer(String name, String image, Path hostDir, int memoryMb) {
+            this.name = name;
+            this.image = image;
+            this.hostDir = hostDir;
+            this.memoryMb = memoryMb;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Host directory mounted at /code inside the container.
+         */
+        public Path getHostDir() {
+            return hostDir;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.onlinejudge.service;
+
+import com.onlinejudge.model.JudgeJob;
+import com.onlinejudge.model.Submission;
+import com.onlinejudge.repository.JudgeJobRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Judge jobs kept in a database table, shared by every process using the same database
+ * (judge.queue.mode=database). The API adds a job per submission; {@link JudgeWorker}s claim jobs,
+ * contest lane first, renew their leases while judging and remove the jobs once the verdicts are saved.
+ *
+ * A job whose lease runs out, because its worker crashed or lost the database, is claimed again by
+ * another worker, so a submission is judged at least once.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class JudgeJobQueue {
+
+    private final JudgeJobRepository jobRepository;
+    private final PlatformTransactionManager transactionManager;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${judge.queue.mode:local}")
+    private String mode;
+
+    @Value("${judge.worker.lease-seconds:30}")
+    private int leaseSeconds;
+
+    @Value("${judge.queue.rejudge-capacity:100}")
+    private int rejudgeCapacity;
+
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        if (!isEnabled()) {
+            return;
+        }
+        for (JudgeJob.Status status : JudgeJob.Status.values()) {
+            Gauge.builder("judge.jobs", () -> jobRepository.countByStatus(status))
+                    .description("Jobs in the shared judge queue")
+                    .tag("status", status.name().toLowerCase())
+                    .register(meterRegistry);
+        }
+        log.info("Judge jobs are queued in the database (lease {} s)", leaseSeconds);
+    }
+
+    /**
+     * Whether submissions are queued here rather than judged by this process's {@link JudgeQueue}.
+     */
+    public boolean isEnabled() {
+        return "database".equalsIgnoreCase(mode);
+    }
+
+    public int getLeaseSeconds() {
+        return leaseSeconds;
+    }
+
+    /**
+     * Whether a job in {@code lane} would be accepted now. Only rejudges are limited: new submissions
+     * are kept in the table until a worker gets to them.
+     */
+    public boolean hasRoom(Submission.Lane lane) {
+        return lane != Submission.Lane.REJUDGE || jobRepository.countByLane(lane) < rejudgeCapacity;
+    }
+
+    /**
+     * @throws JudgeQueueFullException for a rejudge, if {@code judge.queue.rejudge-capacity} rejudges are queued
+     */
+    public void enqueue(Long submissionId, Submission.Lane lane) {
+        if (!hasRoom(lane)) {
+            throw new JudgeQueueFullException("Too many rejudges waiting, please retry later");
+        }
+        jobRepository.save(JudgeJob.builder()
+                .submissionId(submissionId)
+                .status(JudgeJob.Status.QUEUED)
+                .lane(lane)
+                .attempts(0)
+                .createdAt(LocalDateTime.now())
+                .build());
+    }
+
+    /**
+     * Claim up to {@code max} of the oldest claimable jobs for {@code owner}.
+     *
+     * @return The claimed jobs, with their attempt counts including this claim
+     */
+    public List<JudgeJob> claim(String owner, int max) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime until = now.plusSeconds(leaseSeconds);
+        // Other workers take some of the candidates first, so look at a few more than needed
+        List<JudgeJob> candidates = jobRepository.findClaimable(now, PageRequest.of(0, max * 2));
+        List<JudgeJob> claimed = new ArrayList<>();
+        for (JudgeJob job : candidates) {
+            if (claimed.size() == max) {
+                break;
+            }
+            Integer updated = transactionTemplate.execute(
+                    status -> jobRepository.claim(job.getSubmissionId(), owner, until, now));
+            if (updated != null && updated == 1) {
+                job.setStatus(JudgeJob.Status.RUNNING);
+                job.setLeaseOwner(owner);
+                job.setLeaseExpiresAt(until);
+                job.setAttempts(job.getAttempts() + 1);
+                claimed.add(job);
+            }
+        }
+        return claimed;
+    }
+
+    /**
+     * Extend the leases of jobs {@code owner} is judging.
+     *
+     * @return How many of them it still holds
+     */
+    public int renew(String owner, Collection<Long> submissionIds) {
+        if (submissionIds.isEmpty()) {
+            return 0;
+        }
+        LocalDateTime until = LocalDateTime.now().plusSeconds(leaseSeconds);
+        Integer renewed = transactionTemplate.execute(status -> jobRepository.renew(submissionIds, owner, until));
+        return renewed != null ? renewed : 0;
+    }
+
+    /**
+     * Put jobs back in the queue for any worker to claim right away.
+     */
+    public void release(String owner, Collection<Long> submissionIds) {
+        if (!submissionIds.isEmpty()) {
+            transactionTemplate.executeWithoutResult(status -> jobRepository.release(submissionIds, owner));
+        }
+    }
+
+    /**
+     * Remove jobs whose verdicts are saved.
+     */
+    public void complete(String owner, Collection<Long> submissionIds) {
+        if (!submissionIds.isEmpty()) {
+            transactionTemplate.executeWithoutResult(status -> jobRepository.complete(submissionIds, owner));
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.onlinejudge.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Timers for each stage of judging a submission, exported with percentile histograms
+ * (see /actuator/prometheus):
+ * <ul>
+ *   <li>{@code judge.queue.wait} - from submission to a judge worker picking it up</li>
+ *   <li>{@code judge.workspace.setup} - creating the workspace and writing the source</li>
+ *   <li>{@code judge.compile} - compiling (or restoring from the compile cache)</li>
+ *   <li>{@code judge.test.run} - running one test case; {@code judge.batch.run} for a whole batch</li>
+ *   <li>{@code judge.test.compare} - checking one test's output</li>
+ *   <li>{@code judge.db.save} - saving the report and verdict</li>
+ *   <li>{@code judge.submission} - the whole judgement</li>
+ * </ul>
+ * All are tagged with the language id and executor type, and with the verdict where there is one.
+ * Gauges report executions in flight and the disk space used by judge directories.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class JudgeMetrics {
+
+    private static final String TMP = System.getProperty("java.io.tmpdir");
+    // Besides the workspaces themselves: the Docker pool mounts and the CPU times files
+    private static final List<String> WORKSPACE_DIRS = List.of("onlinejudge-docker-pool", "onlinejudge-times");
+
+    private final MeterRegistry meterRegistry;
+    private final CodeExecutor codeExecutor;
+    private final WorkspaceManager workspaceManager;
+
+    @Value("${judge.compile-cache.dir:${java.io.tmpdir}/onlinejudge-cache}")
+    private String compileCacheDir;
+
+    @Value("${judge.test-data.dir:${java.io.tmpdir}/onlinejudge-testdata}")
+    private String testDataDir;
+
+    @Value("${judge.metrics.disk-scan-interval-seconds:30}")
+    private int diskScanIntervalSeconds;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong workspaceBytes = new AtomicLong();
+    private final AtomicLong compileCacheBytes = new AtomicLong();
+    private final AtomicLong testDataBytes = new AtomicLong();
+
+    // Walking the directories is too slow to do on every scrape
+    private final ScheduledExecutorService diskScanner = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "judge-disk-scan");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder("judge.executions.inflight", inFlight, AtomicInteger::get)
+                .description("Compilations and program runs currently executing")
+                .register(meterRegistry);
+        diskGauge("workspaces", workspaceBytes);
+        diskGauge("compile-cache", compileCacheBytes);
+        diskGauge("test-data", testDataBytes);
+        diskScanner.scheduleWithFixedDelay(this::scanDisk, 0, diskScanIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        diskScanner.shutdownNow();
+    }
+
+    /**
+     * Count an execution as in flight until the returned handle is closed.
+     */
+    public InFlight startExecution() {
+        inFlight.incrementAndGet();
+        return inFlight::decrementAndGet;
+    }
+
+    public void recordQueueWait(int languageId, long nanos) {
+        timer("judge.queue.wait", "Time from submission until a judge worker starts on it", languageId, null)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordWorkspaceSetup(int languageId, long nanos) {
+        timer("judge.workspace.setup", "Creating the workspace and writing the source", languageId, null)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param outcome COMPILED, COMPILATION_ERROR or INTERNAL_ERROR
+     */
+    public void recordCompile(int languageId, String outcome, long nanos) {
+        timer("judge.compile", "Compiling a submission", languageId, outcome).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordTestRun(int languageId, String verdict, long nanos) {
+        timer("judge.test.run", "Running one test case", languageId, verdict).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordBatchRun(int languageId, long nanos) {
+        timer("judge.batch.run", "Running all test cases of a submission in one batch", languageId, null)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordCompare(int languageId, String verdict, long nanos) {
+        timer("judge.test.compare", "Checking the output of one test case", languageId, verdict)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordSave(int languageId, String verdict, long nanos) {
+        timer("judge.db.save", "Saving the test report and verdict", languageId, verdict)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordSubmission(int languageId, String verdict, long nanos) {
+        timer("judge.submission", "Judging a submission, from worker pickup to saved verdict", languageId, verdict)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private Timer timer(String name, String description, int languageId, String verdict) {
+        // Micrometer caches meters by name and tags, so building one per record is cheap
+        Timer.Builder builder = Timer.builder(name)
+                .description(description)
+                .tag("language", Integer.toString(languageId))
+                .tag("executor", codeExecutor.getExecutorType())
+                .publishPercentileHistogram();
+        if (verdict != null) {
+            builder.tag("verdict", verdict);
+        }
+        return builder.register(meterRegistry);
+    }
+
+    private void diskGauge(String dir, AtomicLong bytes) {
+        Gauge.builder("judge.disk.usage", bytes, AtomicLong::get)
+                .description("Disk space used by judge directories")
+                .tag("dir", dir)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    private void scanDisk() {
+        long workspaces = workspaceManager.getUsedBytes();
+        for (String dir : WORKSPACE_DIRS) {
+            workspaces += size(Paths.get(TMP, dir));
+        }
+        workspaceBytes.set(workspaces);
+        compileCacheBytes.set(size(Paths.get(compileCacheDir)));
+        testDataBytes.set(size(Paths.get(testDataDir)));
+    }
+
+    private static long size(Path root) {
+        if (!Files.isDirectory(root)) {
+            return 0;
+        }
+        try (Stream<Path> walk = Files.walk(root)) {
+            return walk.mapToLong(path -> {
+                try {
+                    return Files.isRegularFile(path) ? Files.size(path) : 0;
+                } catch (IOException e) {
+                    // Deleted while walking
+                    return 0;
+                }
+            }).sum();
+        } catch (IOException | RuntimeException e) {
+            // Workspaces come and go while walking; report what was seen next time
+            log.debug("Failed to measure {}: {}", root, e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * Handle of an execution counted as in flight.
+     */
+    @FunctionalInterface
+    public interface InFlight extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
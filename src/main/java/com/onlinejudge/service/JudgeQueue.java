@@ -0,0 +1,271 @@
+package com.onlinejudge.service;
+
+import com.onlinejudge.model.Submission;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Bounded queue of judge jobs served by a fixed pool of judge workers.
+ * Keeps judging off the request threads; when the queue is full new jobs are rejected
+ * so the API can push back instead of piling up work.
+ *
+ * The next job is not simply the oldest one:
+ * <ul>
+ *   <li>Lanes are strict priorities: contest submissions first, then practice, then rejudges.</li>
+ *   <li>Within a lane, problems share the workers fairly (start-time fair queuing). A job is tagged
+ *       with the virtual time its problem's previous job finishes at, and the job with the lowest tag
+ *       runs next; a job's cost advances its problem's clock. A burst on one problem therefore waits
+ *       behind a trickle on the others, and expensive languages use up more of their problem's share.</li>
+ *   <li>A language holds at most its share of the workers. While it is at its cap its jobs wait and
+ *       jobs in other languages go first.</li>
+ * </ul>
+ * Rejudges have their own capacity ({@code judge.queue.rejudge-capacity}), so a flood of rejudge
+ * requests is rejected on its own instead of crowding new submissions out of the queue.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class JudgeQueue {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${judge.queue.workers:0}")
+    private int workers;
+
+    @Value("${judge.queue.capacity:100}")
+    private int capacity;
+
+    @Value("${judge.queue.rejudge-capacity:100}")
+    private int rejudgeCapacity;
+
+    @Value("${judge.queue.language-limits:true}")
+    private boolean languageLimits;
+
+    private int size;
+    private final List<Thread> threads = new ArrayList<>();
+
+    // Guarded by this
+    private final Map<Submission.Lane, TreeSet<Job>> waiting = new EnumMap<>(Submission.Lane.class);
+    private final Map<Submission.Lane, Double> virtualTime = new EnumMap<>(Submission.Lane.class);
+    private final Map<Submission.Lane, Map<Long, Double>> problemFinish = new EnumMap<>(Submission.Lane.class);
+    private final Map<Integer, Integer> runningByLanguage = new HashMap<>();
+    private int bounded;
+    private int rejudges;
+    private int active;
+    private long sequence;
+    private boolean closed;
+
+    @PostConstruct
+    public void init() {
+        size = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+        for (Submission.Lane lane : Submission.Lane.values()) {
+            waiting.put(lane, new TreeSet<>(Comparator.comparingDouble(Job::start).thenComparingLong(Job::sequence)));
+            virtualTime.put(lane, 0.0);
+            problemFinish.put(lane, new HashMap<>());
+            Gauge.builder("judge.queue.waiting", this, q -> q.getWaitingCount(lane))
+                    .description("Judge jobs waiting for a worker")
+                    .tag("lane", lane.name().toLowerCase())
+                    .register(meterRegistry);
+        }
+        Gauge.builder("judge.queue.active", this, JudgeQueue::getActiveCount)
+                .description("Judge jobs being judged")
+                .register(meterRegistry);
+        for (int i = 1; i <= size; i++) {
+            Thread thread = new Thread(this::workLoop, "judge-worker-" + i);
+            thread.setDaemon(true);
+            thread.start();
+            threads.add(thread);
+        }
+        log.info("Judge queue started with {} workers, capacity {} and {} rejudges (language limits {})", size,
+                capacity, rejudgeCapacity, languageLimits ? "on" : "off");
+    }
+
+    /**
+     * Queue a judge job.
+     *
+     * @throws JudgeQueueFullException if the queue is at capacity, or for a rejudge, at its rejudge capacity
+     */
+    public synchronized void submit(Task task) {
+        Submission.Lane lane = task.lane();
+        if (closed) {
+            throw new JudgeQueueFullException("Judge queue is shutting down, please retry later");
+        }
+        if (!hasRoom(lane)) {
+            throw new JudgeQueueFullException(lane == Submission.Lane.REJUDGE
+                    ? "Too many rejudges waiting, please retry later"
+                    : "Judge queue is full, please retry later");
+        }
+        if (lane == Submission.Lane.REJUDGE) {
+            rejudges++;
+        } else {
+            bounded++;
+        }
+        Map<Long, Double> finish = problemFinish.get(lane);
+        double start = Math.max(virtualTime.get(lane), finish.getOrDefault(task.problemId(), 0.0));
+        finish.put(task.problemId(), start + task.policy().cost());
+        waiting.get(lane).add(new Job(task, start, sequence++));
+        notifyAll();
+    }
+
+    /**
+     * Whether a job in {@code lane} would be accepted now.
+     */
+    public synchronized boolean hasRoom(Submission.Lane lane) {
+        if (closed) {
+            return false;
+        }
+        return lane == Submission.Lane.REJUDGE ? rejudges < rejudgeCapacity : bounded < capacity;
+    }
+
+    public int getWorkerCount() {
+        return size;
+    }
+
+    public synchronized int getQueuedCount() {
+        return waiting.values().stream().mapToInt(TreeSet::size).sum();
+    }
+
+    public synchronized int getActiveCount() {
+        return active;
+    }
+
+    public synchronized int getWaitingCount(Submission.Lane lane) {
+        return waiting.get(lane).size();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        // Workers finish what is queued before they exit
+        long deadline = System.currentTimeMillis() + 30_000;
+        for (Thread thread : threads) {
+            thread.join(Math.max(1, deadline - System.currentTimeMillis()));
+        }
+        int dropped = getQueuedCount();
+        if (dropped > 0 || threads.stream().anyMatch(Thread::isAlive)) {
+            log.warn("Judge workers did not finish in time, {} jobs dropped", dropped);
+            threads.forEach(Thread::interrupt);
+        }
+    }
+
+    private void workLoop() {
+        while (true) {
+            Job job;
+            try {
+                job = take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (job == null) {
+                return;
+            }
+            try {
+                job.task().work().run();
+            } catch (RuntimeException e) {
+                log.error("Judge job failed", e);
+            } finally {
+                finished(job);
+            }
+        }
+    }
+
+    /**
+     * Wait for the next job that may run; null once the queue is shut down and empty.
+     */
+    private synchronized Job take() throws InterruptedException {
+        while (true) {
+            Job job = next();
+            if (job != null) {
+                Submission.Lane lane = job.task().lane();
+                waiting.get(lane).remove(job);
+                virtualTime.put(lane, job.start());
+                forgetIdleProblems(lane);
+                runningByLanguage.merge(job.task().languageId(), 1, Integer::sum);
+                active++;
+                if (lane == Submission.Lane.REJUDGE) {
+                    rejudges--;
+                } else {
+                    bounded--;
+                }
+                return job;
+            }
+            if (closed && getQueuedCount() == 0) {
+                return null;
+            }
+            wait();
+        }
+    }
+
+    private Job next() {
+        for (TreeSet<Job> lane : waiting.values()) {
+            for (Job job : lane) {
+                if (runningByLanguage.getOrDefault(job.task().languageId(), 0) < languageCap(job.task())) {
+                    return job;
+                }
+            }
+        }
+        return null;
+    }
+
+    private int languageCap(Task task) {
+        if (!languageLimits) {
+            return size;
+        }
+        // Every language can always run somewhere
+        return Math.max(1, (int) (size * task.policy().maxWorkerShare()));
+    }
+
+    private void forgetIdleProblems(Submission.Lane lane) {
+        Map<Long, Double> finish = problemFinish.get(lane);
+        // A problem whose jobs all finished in virtual time starts from the lane's clock anyway
+        if (finish.size() > 1024) {
+            double now = virtualTime.get(lane);
+            finish.values().removeIf(time -> time <= now);
+        }
+    }
+
+    private synchronized void finished(Job job) {
+        runningByLanguage.merge(job.task().languageId(), -1, Integer::sum);
+        active--;
+        // A job held back by its language cap may run now
+        notifyAll();
+    }
+
+    /**
+     * How a language is scheduled.
+     *
+     * @param maxWorkerShare Most of the workers its jobs may hold at once, from 0 to 1
+     * @param cost Judging cost of one submission relative to the others, for sharing workers between problems
+     */
+    public record LanguagePolicy(double maxWorkerShare, double cost) {
+        public static final LanguagePolicy DEFAULT = new LanguagePolicy(1.0, 1.0);
+    }
+
+    /**
+     * A judge job.
+     *
+     * @param problemId Problems share the workers fairly with each other
+     */
+    public record Task(Submission.Lane lane, Long problemId, int languageId, LanguagePolicy policy, Runnable work) {
+    }
+
+    private record Job(Task task, double start, long sequence) {
+    }
+}
@@ -0,0 +1,11 @@
+package com.onlinejudge.service;
+
+/**
+ * Thrown when the judge queue cannot accept another submission.
+ */
+public class JudgeQueueFullException extends RuntimeException {
+
+    public JudgeQueueFullException(String message) {
+        super(message);
+    }
+}
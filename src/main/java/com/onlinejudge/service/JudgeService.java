@@ -1,21 +1,45 @@
 package com.onlinejudge.service;
 
+import com.onlinejudge.dto.SubmissionPage;
 import com.onlinejudge.dto.SubmissionRequest;
 import com.onlinejudge.dto.SubmissionResponse;
+import com.onlinejudge.dto.SubmissionSummary;
+import com.onlinejudge.model.JudgeJob;
 import com.onlinejudge.model.Problem;
 import com.onlinejudge.model.Submission;
+import com.onlinejudge.model.SubmissionContent;
+import com.onlinejudge.model.SubmissionTestResult;
 import com.onlinejudge.model.TestCase;
-import com.onlinejudge.repository.ProblemRepository;
+import com.onlinejudge.repository.SubmissionContentRepository;
 import com.onlinejudge.repository.SubmissionRepository;
-import com.onlinejudge.repository.TestCaseRepository;
+import com.onlinejudge.repository.SubmissionTestResultRepository;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
 
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 @Service
 @RequiredArgsConstructor
@@ -23,9 +47,23 @@ import java.util.Map;
 public class JudgeService {
 
     private final CodeExecutor codeExecutor;
-    private final ProblemRepository problemRepository;
-    private final TestCaseRepository testCaseRepository;
+    private final CheckerService checkerService;
+    private final TestDataStore testDataStore;
+    private final JudgeQueue judgeQueue;
+    private final JudgeJobQueue jobQueue;
+    private final ProblemCache problemCache;
+    private final SubmissionEvents submissionEvents;
+    private final JudgeMetrics metrics;
+    private final SubmissionWriter submissionWriter;
     private final SubmissionRepository submissionRepository;
+    private final SubmissionContentRepository contentRepository;
+    private final SubmissionTestResultRepository testResultRepository;
+
+    // Expected output shown in reports for visible tests is cut off beyond this
+    private static final int REPORT_PREVIEW_BYTES = 64 * 1024;
+
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int RECENT_SUBMISSIONS = 10;
 
     // Language ID to name mapping
     private static final Map<Integer, String> LANGUAGE_NAMES = Map.of(
@@ -36,13 +74,71 @@ public class JudgeService {
             50, "C (GCC)"
     );
 
+    // Judge queue scheduling of languages that differ from the default (any number of workers, cost 1).
+    // javac plus JVM start-up make a Java submission several times as expensive as a Python or C one,
+    // so a wave of them may take only half the workers and counts for more of its problem's fair share.
+    private static final Map<Integer, JudgeQueue.LanguagePolicy> LANGUAGE_POLICIES = Map.of(
+            62, new JudgeQueue.LanguagePolicy(0.5, 4),
+            54, new JudgeQueue.LanguagePolicy(0.75, 2)
+    );
+
+    @Value("${judge.output-limit-kb:16384}")
+    private int defaultOutputLimitKb;
+
+    @Value("${judge.default-mode:FAIL_FAST}")
+    private Submission.JudgeMode defaultJudgeMode;
+
+    @Value("${judge.parallel.enabled:false}")
+    private boolean parallelEnabled;
+
+    @Value("${judge.parallel.max-per-submission:4}")
+    private int maxParallelPerSubmission;
+
+    @Value("${judge.parallel.pool-size:0}")
+    private int parallelPoolSize;
+
+    // Shared by all submissions when parallel test execution is enabled
+    private ExecutorService testRunPool;
+
     @PostConstruct
     public void init() {
         log.info("JudgeService initialized with executor: {}", codeExecutor.getExecutorType());
+        if (codeExecutor.supportsBatch()) {
+            // One container runs all tests of a submission, so there is nothing to run in parallel
+            if (parallelEnabled) {
+                log.warn("judge.parallel.enabled is ignored: the {} executor runs test cases in batches "
+                        + "(set docker.batch.enabled=false to run them in parallel)", codeExecutor.getExecutorType());
+            }
+            log.info("Test cases run in batches");
+        } else if (parallelEnabled) {
+            int size = parallelPoolSize > 0 ? parallelPoolSize : Runtime.getRuntime().availableProcessors();
+            AtomicInteger counter = new AtomicInteger();
+            testRunPool = Executors.newFixedThreadPool(size, r -> {
+                Thread thread = new Thread(r, "test-runner-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            log.info("Parallel test execution enabled: {} threads, {} per submission", size, maxParallelPerSubmission);
+        } else {
+            log.info("Test cases run one at a time");
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (testRunPool != null) {
+            testRunPool.shutdownNow();
+        }
     }
 
+    /**
+     * Save the submission as PENDING and queue it for judging, here or by a {@link JudgeWorker}.
+     * The returned response carries the PENDING verdict; clients poll {@link #getSubmission} for the result.
+     *
+     * @throws JudgeQueueFullException if the judge queue cannot take more work
+     */
     public SubmissionResponse submitCode(SubmissionRequest request) {
-        Problem problem = problemRepository.findById(request.getProblemId())
+        Problem problem = problemCache.getProblem(request.getProblemId())
                 .orElseThrow(() -> new IllegalArgumentException("Problem not found: " + request.getProblemId()));
 
         // Create pending submission
@@ -50,167 +146,676 @@ public class JudgeService {
                 .problemId(problem.getId())
                 .languageId(request.getLanguageId())
                 .languageName(LANGUAGE_NAMES.getOrDefault(request.getLanguageId(), "Unknown"))
-                .sourceCode(request.getSourceCode())
                 .verdict(Submission.Verdict.PENDING)
+                .judgeMode(resolveJudgeMode(request, problem))
+                .lane(resolveLane(request))
                 .build();
-        submission = submissionRepository.save(submission);
+        SubmissionContent content = SubmissionContent.builder()
+                .sourceCode(request.getSourceCode())
+                .build();
+        submission = submissionWriter.insert(submission, content);
 
         // Validate language support
         if (!LANGUAGE_NAMES.containsKey(request.getLanguageId())) {
             submission.setVerdict(Submission.Verdict.INTERNAL_ERROR);
-            submission.setErrorMessage("Unsupported language. Supported: Python, Java, C++, JavaScript, C");
-            submissionRepository.save(submission);
-            return buildResponse(submission, problem, new ArrayList<>());
+            content.setErrorMessage("Unsupported language. Supported: Python, Java, C++, JavaScript, C");
+            submissionWriter.update(submission, content, List.of());
+            return buildResponse(submission, content, problem, new ArrayList<>());
+        }
+
+        Submission pending = submission;
+        if (jobQueue.isEnabled()) {
+            try {
+                jobQueue.enqueue(pending.getId(), pending.getLane());
+            } catch (RuntimeException e) {
+                discard(pending);
+                throw e;
+            }
+            return buildResponse(submission, content, problem, new ArrayList<>());
+        }
+
+        // Built first: once queued, the submission and its content belong to the judge worker
+        SubmissionResponse response = buildResponse(pending, content, problem, new ArrayList<>());
+        submissionEvents.open(pending.getId());
+        long queuedAt = System.nanoTime();
+        try {
+            judgeQueue.submit(task(pending.getLane(), pending, () -> judge(pending, content, problem, queuedAt)));
+        } catch (JudgeQueueFullException e) {
+            // Nothing will ever judge it, so don't leave a PENDING row behind
+            submissionEvents.discard(pending.getId());
+            discard(pending);
+            throw e;
+        }
+
+        return response;
+    }
+
+    /**
+     * Judge an already judged submission again, in the rejudge lane. Its verdict and test results are
+     * cleared first, so it reads as PENDING until the new verdict is saved.
+     */
+    public SubmissionResponse rejudge(Long submissionId) {
+        Submission submission = submissionRepository.findById(submissionId)
+                .orElseThrow(() -> new IllegalArgumentException("Submission not found: " + submissionId));
+        if (submission.getVerdict() == Submission.Verdict.PENDING) {
+            throw new IllegalArgumentException("Submission " + submissionId + " is waiting to be judged");
+        }
+        if (!LANGUAGE_NAMES.containsKey(submission.getLanguageId())) {
+            throw new IllegalArgumentException("Unsupported language: " + submission.getLanguageId());
+        }
+        Problem problem = problemCache.getProblem(submission.getProblemId())
+                .orElseThrow(() -> new IllegalArgumentException("Problem not found"));
+        SubmissionContent content = contentRepository.findById(submissionId)
+                .orElseThrow(() -> new IllegalArgumentException("Source of submission " + submissionId + " not found"));
+
+        boolean room = jobQueue.isEnabled()
+                ? jobQueue.hasRoom(Submission.Lane.REJUDGE)
+                : judgeQueue.hasRoom(Submission.Lane.REJUDGE);
+        if (!room) {
+            // Before anything is cleared, so the old verdict stays
+            throw new JudgeQueueFullException("Too many rejudges waiting, please retry later");
+        }
+
+        submission.setVerdict(Submission.Verdict.PENDING);
+        submission.setExecutionTime(null);
+        submission.setMemoryUsed(null);
+        content.setCompileOutput(null);
+        content.setErrorMessage(null);
+        submissionWriter.reset(submission);
+
+        // Built first: once queued, the submission and its content belong to the judge worker
+        SubmissionResponse response = buildResponse(submission, content, problem, new ArrayList<>());
+        try {
+            if (jobQueue.isEnabled()) {
+                jobQueue.enqueue(submissionId, Submission.Lane.REJUDGE);
+            } else {
+                submissionEvents.open(submissionId);
+                long queuedAt = System.nanoTime();
+                judgeQueue.submit(task(Submission.Lane.REJUDGE, submission,
+                        () -> judge(submission, content, problem, queuedAt)));
+            }
+        } catch (RuntimeException e) {
+            // The queue filled up since the check above, or the job could not be saved. Nothing will
+            // judge it, and a PENDING submission cannot be rejudged, so don't leave it PENDING
+            if (!(e instanceof JudgeQueueFullException)) {
+                log.error("Failed to queue rejudge of submission {}", submissionId, e);
+            }
+            submissionEvents.discard(submissionId);
+            submission.setVerdict(Submission.Verdict.INTERNAL_ERROR);
+            content.setErrorMessage("Rejudge was not queued: " + e.getMessage());
+            submissionWriter.update(submission, content, List.of());
+            throw e;
+        }
+        return response;
+    }
+
+    /**
+     * Queue a submission claimed from the {@link JudgeJobQueue} for this process's judge workers.
+     *
+     * @return Completes once the verdict is committed, or at once if the submission is no longer pending
+     * @throws JudgeQueueFullException if the judge queue cannot take more work
+     */
+    public CompletableFuture<Submission> judgeQueued(JudgeJob job, long queuedAt) {
+        Long submissionId = job.getSubmissionId();
+        Submission submission = submissionRepository.findById(submissionId).orElse(null);
+        if (submission == null || submission.getVerdict() != Submission.Verdict.PENDING) {
+            // Judged by a worker that stopped before removing the job
+            return CompletableFuture.completedFuture(submission);
+        }
+        CompletableFuture<Submission> saved = new CompletableFuture<>();
+        judgeQueue.submit(task(job.getLane(), submission, () -> {
+            try {
+                SubmissionContent content = contentRepository.findById(submissionId).orElseThrow(
+                        () -> new IllegalStateException("Source of submission " + submissionId + " not found"));
+                Problem problem = problemCache.getProblem(submission.getProblemId()).orElseThrow(
+                        () -> new IllegalStateException("Problem not found: " + submission.getProblemId()));
+                judge(submission, content, problem, queuedAt).whenComplete((result, error) -> {
+                    if (error != null) {
+                        saved.completeExceptionally(error);
+                    } else {
+                        saved.complete(result);
+                    }
+                });
+            } catch (RuntimeException e) {
+                saved.completeExceptionally(e);
+                throw e;
+            }
+        }));
+        return saved;
+    }
+
+    /**
+     * Give up on a queued submission, saving it as an internal error.
+     */
+    public CompletableFuture<Submission> abandonQueued(Long submissionId, String reason) {
+        Submission submission = submissionRepository.findById(submissionId).orElse(null);
+        if (submission == null || submission.getVerdict() != Submission.Verdict.PENDING) {
+            return CompletableFuture.completedFuture(submission);
+        }
+        log.error("Submission {}: {}", submissionId, reason);
+        submission.setVerdict(Submission.Verdict.INTERNAL_ERROR);
+        SubmissionContent diagnostics = SubmissionContent.builder()
+                .id(submissionId)
+                .errorMessage(reason)
+                .build();
+        // Streams of it, if any, read the verdict back from the database
+        return submissionWriter.update(submission, diagnostics, List.of())
+                .whenComplete((saved, error) -> submissionEvents.discard(submissionId));
+    }
+
+    private static JudgeQueue.Task task(Submission.Lane lane, Submission submission, Runnable work) {
+        int languageId = submission.getLanguageId();
+        return new JudgeQueue.Task(lane != null ? lane : Submission.Lane.PRACTICE, submission.getProblemId(),
+                languageId, LANGUAGE_POLICIES.getOrDefault(languageId, JudgeQueue.LanguagePolicy.DEFAULT), work);
+    }
+
+    private void discard(Submission submission) {
+        // The content row references the submission
+        contentRepository.deleteById(submission.getId());
+        submissionRepository.delete(submission);
+    }
+
+    /**
+     * Judge a pending submission and persist its verdict and per-test results.
+     * Runs on a judge worker thread. Progress and the verdict are published to {@link SubmissionEvents}.
+     *
+     * @return Completes once the verdict is committed
+     */
+    CompletableFuture<Submission> judge(Submission submission, SubmissionContent content, Problem problem,
+                                        long queuedAt) {
+        long startedAt = System.nanoTime();
+        int languageId = submission.getLanguageId();
+        metrics.recordQueueWait(languageId, startedAt - queuedAt);
+        List<SubmissionResponse.TestCaseResult> judged = List.of();
+        try {
+            judged = judgeSubmission(submission, content, problem);
+        } catch (Exception e) {
+            log.error("Judging submission {} failed", submission.getId(), e);
+            submission.setVerdict(Submission.Verdict.INTERNAL_ERROR);
+            content.setErrorMessage("Judging failed: " + e.getMessage());
         }
 
+        // The verdict and the per-test report are committed together by the write-behind writer.
+        // The event stream stays open until then, so a client that reconnects afterwards reads the verdict back.
+        List<SubmissionResponse.TestCaseResult> testCaseResults = judged;
+        String verdict = submission.getVerdict().name();
+        long saveStart = System.nanoTime();
+        // The source never changes, so the content row is only written when there are diagnostics
+        SubmissionContent diagnostics = content.getCompileOutput() != null || content.getErrorMessage() != null
+                ? content : null;
+        return submissionWriter.update(submission, diagnostics, testResults(submission.getId(), testCaseResults))
+                .whenComplete((saved, error) -> {
+                    long now = System.nanoTime();
+                    metrics.recordSave(languageId, verdict, now - saveStart);
+                    metrics.recordSubmission(languageId, verdict, now - startedAt);
+                    submissionEvents.complete(submission.getId(), buildResponse(submission, content, problem,
+                            testCaseResults));
+                });
+    }
+
+    /**
+     * Set the verdict and results on the submission and its content; {@link #judge} saves them.
+     *
+     * @return The per-test report, empty if no test ran
+     */
+    private List<SubmissionResponse.TestCaseResult> judgeSubmission(Submission submission, SubmissionContent content,
+                                                                    Problem problem) {
         // Get all test cases for this problem
-        List<TestCase> testCases = testCaseRepository.findByProblemIdOrderByOrderIndexAsc(problem.getId());
-        
+        List<TestCase> testCases = problemCache.getTestCases(problem.getId());
+
         if (testCases.isEmpty()) {
             submission.setVerdict(Submission.Verdict.INTERNAL_ERROR);
-            submission.setErrorMessage("No test cases found for this problem");
-            submissionRepository.save(submission);
-            return buildResponse(submission, problem, new ArrayList<>());
+            content.setErrorMessage("No test cases found for this problem");
+            return List.of();
         }
 
-        // Run against each test case
+        // Compile once; every test case runs against the same compiled program
+        try (CodeExecutor.CompiledProgram program = compile(submission, content.getSourceCode())) {
+
+            if (!program.isSuccessful()) {
+                CodeExecutor.ExecutionResult failure = program.getFailure();
+                if (failure.status == CodeExecutor.ExecutionResult.ResultStatus.COMPILATION_ERROR) {
+                    submission.setVerdict(Submission.Verdict.COMPILATION_ERROR);
+                    content.setCompileOutput(failure.stderr);
+                } else {
+                    submission.setVerdict(Submission.Verdict.INTERNAL_ERROR);
+                    content.setErrorMessage(failure.errorMessage);
+                }
+                submissionEvents.publish(submission.getId(), SubmissionEvents.COMPILED,
+                        Map.of("successful", false));
+                return List.of();
+            }
+            submissionEvents.publish(submission.getId(), SubmissionEvents.COMPILED,
+                    Map.of("successful", true, "compileTimeMs", program.getCompileTimeMs()));
+
+            return runTestCases(submission, content, problem, testCases, program);
+        }
+    }
+
+    private CodeExecutor.CompiledProgram compile(Submission submission, String sourceCode) {
+        int languageId = submission.getLanguageId();
+        long start = System.nanoTime();
+        CodeExecutor.CompiledProgram program;
+        try (JudgeMetrics.InFlight ignored = metrics.startExecution()) {
+            program = codeExecutor.compile(sourceCode, languageId);
+        }
+        long total = System.nanoTime() - start;
+
+        // Executors time the compiler itself; the rest is preparing the workspace
+        long compileNanos = TimeUnit.MILLISECONDS.toNanos(program.getCompileTimeMs());
+        metrics.recordWorkspaceSetup(languageId, Math.max(0, total - compileNanos));
+        String outcome = program.isSuccessful() ? "COMPILED" : program.getFailure().status.name();
+        metrics.recordCompile(languageId, outcome, program.isSuccessful() ? compileNanos : total);
+        return program;
+    }
+
+    private List<SubmissionResponse.TestCaseResult> runTestCases(Submission submission, SubmissionContent content,
+                                                                 Problem problem,
+                                                                 List<TestCase> testCases,
+                                                                 CodeExecutor.CompiledProgram program) {
+        Submission.JudgeMode mode = submission.getJudgeMode() != null ? submission.getJudgeMode() : defaultJudgeMode;
+        boolean stopOnFailure = mode != Submission.JudgeMode.RUN_ALL;
+        List<Integer> order = runOrder(testCases, mode);
+
+        // Each test's report is built and streamed as soon as its outcome is known, in run order
         List<SubmissionResponse.TestCaseResult> testCaseResults = new ArrayList<>();
+        Consumer<TestOutcome> onOutcome = outcome -> {
+            SubmissionResponse.TestCaseResult report = testCaseResult(outcome);
+            if (report != null) {
+                testCaseResults.add(report);
+                submissionEvents.publish(submission.getId(), SubmissionEvents.TEST, report);
+            }
+        };
+
+        List<TestOutcome> outcomes;
+        if (codeExecutor.supportsBatch()) {
+            outcomes = runTestCasesInBatch(problem, testCases, order, stopOnFailure, program, onOutcome);
+        } else if (testRunPool != null && testCases.size() > 1) {
+            outcomes = runTestCasesInParallel(problem, testCases, order, stopOnFailure, program, onOutcome);
+        } else {
+            outcomes = runTestCasesInOrder(problem, testCases, order, stopOnFailure, program, onOutcome);
+        }
+
+        // Outcomes are in run order; unless every test runs they end at the first failure
         Submission.Verdict finalVerdict = Submission.Verdict.ACCEPTED;
         long maxTime = 0;
+        long maxMemoryKb = 0;
 
-        for (int i = 0; i < testCases.size(); i++) {
-            TestCase tc = testCases.get(i);
-            
-            CodeExecutor.ExecutionResult result = codeExecutor.execute(
-                    request.getSourceCode(),
-                    request.getLanguageId(),
-                    tc.getInput(),
-                    problem.getTimeLimit(),
-                    problem.getMemoryLimit()
-            );
+        for (TestOutcome outcome : outcomes) {
+            CodeExecutor.ExecutionResult result = outcome.result();
 
-            // Track execution time
+            // Track execution time and peak memory
             if (result.executionTimeMs > maxTime) {
                 maxTime = result.executionTimeMs;
             }
+            maxMemoryKb = Math.max(maxMemoryKb, result.memoryUsedKb);
 
-            // Handle different result statuses
-            switch (result.status) {
-                case COMPILATION_ERROR:
-                    submission.setVerdict(Submission.Verdict.COMPILATION_ERROR);
-                    submission.setCompileOutput(result.stderr);
-                    submissionRepository.save(submission);
-                    return buildResponse(submission, problem, testCaseResults);
-                    
-                case TIME_LIMIT_EXCEEDED:
-                    finalVerdict = Submission.Verdict.TIME_LIMIT_EXCEEDED;
-                    addTestCaseResult(testCaseResults, i + 1, false, "", tc, result, true);
-                    submission.setVerdict(finalVerdict);
-                    submission.setExecutionTime((double) maxTime / 1000);
-                    submissionRepository.save(submission);
-                    return buildResponse(submission, problem, testCaseResults);
-
-                case MEMORY_LIMIT_EXCEEDED:
-                    finalVerdict = Submission.Verdict.MEMORY_LIMIT_EXCEEDED;
-                    addTestCaseResult(testCaseResults, i + 1, false, "", tc, result, true);
-                    submission.setVerdict(finalVerdict);
-                    submission.setExecutionTime((double) maxTime / 1000);
-                    submissionRepository.save(submission);
-                    return buildResponse(submission, problem, testCaseResults);
-                    
-                case RUNTIME_ERROR:
-                    finalVerdict = Submission.Verdict.RUNTIME_ERROR;
-                    submission.setErrorMessage(result.stderr);
-                    addTestCaseResult(testCaseResults, i + 1, false, result.stdout, tc, result, true);
-                    submission.setVerdict(finalVerdict);
-                    submission.setExecutionTime((double) maxTime / 1000);
-                    submissionRepository.save(submission);
-                    return buildResponse(submission, problem, testCaseResults);
-                    
-                case INTERNAL_ERROR:
-                    submission.setVerdict(Submission.Verdict.INTERNAL_ERROR);
-                    submission.setErrorMessage(result.errorMessage);
-                    submissionRepository.save(submission);
-                    return buildResponse(submission, problem, testCaseResults);
-                    
-                case SUCCESS:
-                    // Check output
-                    String actualOutput = normalizeOutput(result.stdout);
-                    String expectedOutput = normalizeOutput(tc.getExpectedOutput());
-                    boolean passed = actualOutput.equals(expectedOutput);
-                    
-                    addTestCaseResult(testCaseResults, i + 1, passed, actualOutput, tc, result, false);
-                    
-                    if (!passed) {
-                        finalVerdict = Submission.Verdict.WRONG_ANSWER;
-                        break; // Stop on first failure
-                    }
-                    break;
-                    
-                default:
-                    break;
+            // The submission's error message comes from the test that decided the verdict
+            if (finalVerdict == Submission.Verdict.ACCEPTED) {
+                if (outcome.verdict() == Submission.Verdict.RUNTIME_ERROR) {
+                    content.setErrorMessage(result.stderr);
+                } else if (outcome.verdict() == Submission.Verdict.INTERNAL_ERROR) {
+                    content.setErrorMessage(result.errorMessage);
+                }
             }
-            
-            // Stop if we got a wrong answer
-            if (finalVerdict == Submission.Verdict.WRONG_ANSWER) {
-                break;
+
+            if (!outcome.passed() && finalVerdict == Submission.Verdict.ACCEPTED) {
+                finalVerdict = outcome.verdict();
             }
         }
+        testCaseResults.sort(Comparator.comparing(SubmissionResponse.TestCaseResult::getTestCaseNumber));
 
-        // Update and save final submission
         submission.setVerdict(finalVerdict);
         submission.setExecutionTime((double) maxTime / 1000);
-        submissionRepository.save(submission);
+        submission.setMemoryUsed((int) maxMemoryKb);
+        return testCaseResults;
+    }
+
+    /**
+     * Report of one test for the submission result, or null if it has none (internal errors).
+     */
+    private SubmissionResponse.TestCaseResult testCaseResult(TestOutcome outcome) {
+        TestCase tc = outcome.testCase();
+        CodeExecutor.ExecutionResult result = outcome.result();
+        int num = outcome.index() + 1;
+        return switch (outcome.verdict()) {
+            case TIME_LIMIT_EXCEEDED, MEMORY_LIMIT_EXCEEDED, OUTPUT_LIMIT_EXCEEDED ->
+                    testCaseResult(num, false, "", null, tc, result, true);
+            case RUNTIME_ERROR -> testCaseResult(num, false, result.stdout, null, tc, result, true);
+            case INTERNAL_ERROR -> null;
+            default -> testCaseResult(num, outcome.passed(), outcome.actualOutput(), outcome.message(), tc, result,
+                    false);
+        };
+    }
+
+    /**
+     * Indices of the test cases in the order they should run. SAMPLES_FIRST moves the visible
+     * tests ahead of the hidden ones so cheap, likely failures are found first.
+     */
+    private static List<Integer> runOrder(List<TestCase> testCases, Submission.JudgeMode mode) {
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < testCases.size(); i++) {
+            order.add(i);
+        }
+        if (mode == Submission.JudgeMode.SAMPLES_FIRST) {
+            // Stable, so tests keep their order within each group
+            order.sort(Comparator.comparing(i -> Boolean.TRUE.equals(testCases.get(i).getIsHidden())));
+        }
+        return order;
+    }
+
+    private static Submission.Lane resolveLane(SubmissionRequest request) {
+        if (request.getLane() == null) {
+            return Submission.Lane.PRACTICE;
+        }
+        if (request.getLane() == Submission.Lane.REJUDGE) {
+            throw new IllegalArgumentException("lane must be CONTEST or PRACTICE");
+        }
+        return request.getLane();
+    }
+
+    private Submission.JudgeMode resolveJudgeMode(SubmissionRequest request, Problem problem) {
+        if (request.getJudgeMode() != null) {
+            return request.getJudgeMode();
+        }
+        return problem.getJudgeMode() != null ? problem.getJudgeMode() : defaultJudgeMode;
+    }
+
+    private List<TestOutcome> runTestCasesInOrder(Problem problem, List<TestCase> testCases, List<Integer> order,
+                                                  boolean stopOnFailure, CodeExecutor.CompiledProgram program,
+                                                  Consumer<TestOutcome> onOutcome) {
+        List<TestOutcome> outcomes = new ArrayList<>();
+        for (int index : order) {
+            TestOutcome outcome = runTestCase(index, problem, testCases.get(index), program);
+            outcomes.add(outcome);
+            onOutcome.accept(outcome);
+
+            if (stopOnFailure && !outcome.passed()) {
+                break;
+            }
+        }
+        return outcomes;
+    }
+
+    /**
+     * Run the test cases through {@link CodeExecutor#runBatch} calls, checking the outputs after each call.
+     * The batch runner cannot tell a wrong answer, so when stopping on failure the batches start at one
+     * test and double in size: a failing test costs at most as many extra runs as passed before it, and an
+     * accepted submission takes about log2(tests) batches. Otherwise everything runs in one batch.
+     */
+    private List<TestOutcome> runTestCasesInBatch(Problem problem, List<TestCase> testCases, List<Integer> order,
+                                                  boolean stopOnFailure, CodeExecutor.CompiledProgram program,
+                                                  Consumer<TestOutcome> onOutcome) {
+        List<TestOutcome> outcomes = new ArrayList<>();
+        int size = stopOnFailure ? 1 : order.size();
+        for (int from = 0; from < order.size(); from += size, size *= 2) {
+            List<Integer> chunk = order.subList(from, Math.min(order.size(), from + size));
+            if (!runAndCheckBatch(problem, testCases, chunk, stopOnFailure, program, onOutcome, outcomes)) {
+                break;
+            }
+        }
+        return outcomes;
+    }
+
+    /**
+     * Run one batch and check its outputs, adding the outcomes in run order.
+     *
+     * @return false if a test failed and the rest should not run
+     */
+    private boolean runAndCheckBatch(Problem problem, List<TestCase> testCases, List<Integer> order,
+                                     boolean stopOnFailure, CodeExecutor.CompiledProgram program,
+                                     Consumer<TestOutcome> onOutcome, List<TestOutcome> outcomes) {
+        List<Path> inputs = order.stream()
+                .map(index -> testDataStore.path(testCases.get(index).getInputHash()))
+                .toList();
+        long start = System.nanoTime();
+        List<CodeExecutor.ExecutionResult> results;
+        try (JudgeMetrics.InFlight ignored = metrics.startExecution()) {
+            results = codeExecutor.runBatch(program, inputs, problem.getTimeLimit(), problem.getMemoryLimit(),
+                    outputLimitKb(problem), stopOnFailure);
+        }
+        metrics.recordBatchRun(program.getLanguageId(), System.nanoTime() - start);
+
+        for (int position = 0; position < results.size(); position++) {
+            int index = order.get(position);
+            TestOutcome outcome = evaluate(index, problem, testCases.get(index), results.get(position),
+                    program.getLanguageId());
+            outcomes.add(outcome);
+            onOutcome.accept(outcome);
+
+            // The batch only stops at runtime failures; a wrong answer is found here
+            if (stopOnFailure && !outcome.passed()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Run up to {@code judge.parallel.max-per-submission} test cases at once.
+     * The verdict stays deterministic: outcomes are collected in run order, and when stopping on
+     * failure no later test is started once one fails and the ones still running are cancelled.
+     */
+    private List<TestOutcome> runTestCasesInParallel(Problem problem, List<TestCase> testCases, List<Integer> order,
+                                                     boolean stopOnFailure, CodeExecutor.CompiledProgram program,
+                                                     Consumer<TestOutcome> onOutcome) {
+        Semaphore permits = new Semaphore(maxParallelPerSubmission);
+        // Position in the run order of the earliest failure seen so far
+        AtomicInteger firstFailure = new AtomicInteger(Integer.MAX_VALUE);
+        List<Future<TestOutcome>> futures = new ArrayList<>();
+        List<TestOutcome> outcomes = new ArrayList<>();
+
+        try {
+            for (int position = 0; position < order.size() && position < firstFailure.get(); position++) {
+                permits.acquire();
+                int runPosition = position;
+                int index = order.get(position);
+                TestCase tc = testCases.get(index);
+                futures.add(testRunPool.submit(() -> {
+                    try {
+                        TestOutcome outcome = runTestCase(index, problem, tc, program);
+                        if (stopOnFailure && !outcome.passed()) {
+                            firstFailure.accumulateAndGet(runPosition, Math::min);
+                        }
+                        return outcome;
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            }
+
+            for (Future<TestOutcome> future : futures) {
+                TestOutcome outcome = future.get();
+                outcomes.add(outcome);
+                onOutcome.accept(outcome);
+                if (stopOnFailure && !outcome.passed()) {
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while running test cases", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Test case run failed", e.getCause());
+        } finally {
+            // Later tests cannot change the verdict any more
+            futures.forEach(f -> f.cancel(true));
+        }
+        return outcomes;
+    }
 
-        return buildResponse(submission, problem, testCaseResults);
+    private TestOutcome runTestCase(int index, Problem problem, TestCase tc, CodeExecutor.CompiledProgram program) {
+        long start = System.nanoTime();
+        CodeExecutor.ExecutionResult result;
+        try (JudgeMetrics.InFlight ignored = metrics.startExecution()) {
+            result = codeExecutor.run(
+                    program,
+                    testDataStore.path(tc.getInputHash()),
+                    problem.getTimeLimit(),
+                    problem.getMemoryLimit(),
+                    outputLimitKb(problem)
+            );
+        }
+        long runNanos = System.nanoTime() - start;
+        TestOutcome outcome = evaluate(index, problem, tc, result, program.getLanguageId());
+        metrics.recordTestRun(program.getLanguageId(), outcome.verdict().name(), runNanos);
+        return outcome;
+    }
+
+    private TestOutcome evaluate(int index, Problem problem, TestCase tc, CodeExecutor.ExecutionResult result,
+                                 int languageId) {
+        // Handle different result statuses
+        switch (result.status) {
+            case TIME_LIMIT_EXCEEDED:
+                return new TestOutcome(index, tc, result, Submission.Verdict.TIME_LIMIT_EXCEEDED, "", null);
+
+            case MEMORY_LIMIT_EXCEEDED:
+                return new TestOutcome(index, tc, result, Submission.Verdict.MEMORY_LIMIT_EXCEEDED, "", null);
+
+            case OUTPUT_LIMIT_EXCEEDED:
+                return new TestOutcome(index, tc, result, Submission.Verdict.OUTPUT_LIMIT_EXCEEDED, "", null);
+
+            case RUNTIME_ERROR:
+                return new TestOutcome(index, tc, result, Submission.Verdict.RUNTIME_ERROR, result.stdout, null);
+
+            case SUCCESS:
+                // Check output
+                OutputComparator.Result comparison;
+                long compareStart = System.nanoTime();
+                try {
+                    comparison = checkerService.check(problem, tc, result.output);
+                } catch (CheckerException e) {
+                    metrics.recordCompare(languageId, Submission.Verdict.INTERNAL_ERROR.name(),
+                            System.nanoTime() - compareStart);
+                    result.errorMessage = e.getMessage();
+                    return new TestOutcome(index, tc, result, Submission.Verdict.INTERNAL_ERROR, "", null);
+                }
+                Submission.Verdict verdict = comparison.matches()
+                        ? Submission.Verdict.ACCEPTED : Submission.Verdict.WRONG_ANSWER;
+                metrics.recordCompare(languageId, verdict.name(), System.nanoTime() - compareStart);
+                return new TestOutcome(index, tc, result, verdict, result.stdout, comparison.message());
+
+            default:
+                return new TestOutcome(index, tc, result, Submission.Verdict.INTERNAL_ERROR, "", null);
+        }
     }
 
-    private void addTestCaseResult(List<SubmissionResponse.TestCaseResult> results, 
-                                    int num, boolean passed, String actualOutput, 
-                                    TestCase tc, CodeExecutor.ExecutionResult result,
-                                    boolean isError) {
-        results.add(SubmissionResponse.TestCaseResult.builder()
+    private int outputLimitKb(Problem problem) {
+        return problem.getOutputLimit() != null ? problem.getOutputLimit() : defaultOutputLimitKb;
+    }
+
+    private SubmissionResponse.TestCaseResult testCaseResult(int num, boolean passed, String actualOutput,
+                                                             String message, TestCase tc,
+                                                             CodeExecutor.ExecutionResult result, boolean isError) {
+        return SubmissionResponse.TestCaseResult.builder()
                 .testCaseNumber(num)
                 .passed(passed)
-                .actualOutput(tc.getIsHidden() ? "[Hidden]" : (isError ? result.stderr : actualOutput))
-                .expectedOutput(tc.getIsHidden() ? "[Hidden]" : tc.getExpectedOutput())
+                .actualOutput(tc.getIsHidden() ? "[Hidden]" : (isError ? result.stderr : displayOutput(actualOutput)))
+                .expectedOutput(tc.getIsHidden() ? "[Hidden]"
+                        : testDataStore.preview(tc.getExpectedOutputHash(), REPORT_PREVIEW_BYTES))
+                .message(tc.getIsHidden() ? null : message)
                 .executionTime((double) result.executionTimeMs / 1000)
-                .memoryUsed(0)
+                .memoryUsed((int) result.memoryUsedKb)
                 .hidden(tc.getIsHidden())
-                .build());
+                .build();
+    }
+
+    private static String displayOutput(String output) {
+        return output == null ? "" : output.strip();
+    }
+
+    private static List<SubmissionTestResult> testResults(Long submissionId,
+                                                          List<SubmissionResponse.TestCaseResult> results) {
+        return results.stream()
+                .map(r -> SubmissionTestResult.builder()
+                        .submissionId(submissionId)
+                        .testCaseNumber(r.getTestCaseNumber())
+                        .passed(r.isPassed())
+                        .actualOutput(r.getActualOutput())
+                        .expectedOutput(r.getExpectedOutput())
+                        .message(r.getMessage())
+                        .executionTime(r.getExecutionTime())
+                        .memoryUsed(r.getMemoryUsed())
+                        .hidden(r.isHidden())
+                        .build())
+                .toList();
+    }
+
+    /**
+     * Judging progress as Server-Sent Events: "compiled", one "test" per finished test case and
+     * a final "verdict" carrying the whole result. A submission that is not being judged here
+     * (already judged, or judged by a {@link JudgeWorker}) gets just the verdict, once it is saved.
+     */
+    public Flux<ServerSentEvent<Object>> getSubmissionEvents(Long submissionId) {
+        Flux<ServerSentEvent<Object>> live = submissionEvents.stream(submissionId);
+        if (live != null) {
+            return live;
+        }
+        return submissionEvents.awaitVerdict(() -> getSubmission(submissionId),
+                response -> response.getVerdict() != Submission.Verdict.PENDING);
     }
 
     public SubmissionResponse getSubmission(Long submissionId) {
         Submission submission = submissionRepository.findById(submissionId)
                 .orElseThrow(() -> new IllegalArgumentException("Submission not found: " + submissionId));
-        
-        Problem problem = problemRepository.findById(submission.getProblemId())
+
+        Problem problem = problemCache.getProblem(submission.getProblemId())
                 .orElseThrow(() -> new IllegalArgumentException("Problem not found"));
-        
-        return buildResponse(submission, problem, new ArrayList<>());
-    }
 
-    public List<SubmissionResponse> getSubmissionsForProblem(Long problemId) {
-        Problem problem = problemRepository.findById(problemId)
-                .orElseThrow(() -> new IllegalArgumentException("Problem not found: " + problemId));
-        
-        return submissionRepository.findByProblemIdOrderBySubmittedAtDesc(problemId)
+        List<SubmissionResponse.TestCaseResult> testCaseResults = testResultRepository
+                .findBySubmissionIdOrderByTestCaseNumberAsc(submissionId)
                 .stream()
-                .map(s -> buildResponse(s, problem, new ArrayList<>()))
+                .map(SubmissionResponse.TestCaseResult::from)
                 .toList();
+
+        // Only shown for one submission at a time, so the content is read here rather than with the row
+        SubmissionContent content = contentRepository.findById(submissionId).orElse(null);
+        return buildResponse(submission, content, problem, testCaseResults);
     }
 
-    public List<SubmissionResponse> getRecentSubmissions() {
-        return submissionRepository.findTop10ByOrderBySubmittedAtDesc()
-                .stream()
-                .map(s -> {
-                    Problem problem = problemRepository.findById(s.getProblemId()).orElse(null);
-                    return buildResponse(s, problem, new ArrayList<>());
-                })
-                .toList();
+    /**
+     * A page of a problem's submissions, newest first, without source code or output.
+     *
+     * @param cursor {@link SubmissionPage#getNextCursor()} of the previous page, or null for the first page
+     */
+    public SubmissionPage getSubmissionsForProblem(Long problemId, String cursor, int limit) {
+        Problem problem = problemCache.getProblem(problemId)
+                .orElseThrow(() -> new IllegalArgumentException("Problem not found: " + problemId));
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+
+        // One extra row tells whether there is a next page
+        PageRequest page = PageRequest.ofSize(limit + 1);
+        List<SubmissionSummary> rows;
+        if (cursor == null || cursor.isBlank()) {
+            rows = submissionRepository.findSummariesByProblemId(problemId, page);
+        } else {
+            Cursor after = Cursor.decode(cursor);
+            rows = submissionRepository.findSummariesByProblemIdBefore(problemId, after.submittedAt(), after.id(),
+                    page);
+        }
+
+        boolean hasMore = rows.size() > limit;
+        List<SubmissionSummary> submissions = hasMore ? rows.subList(0, limit) : rows;
+        submissions.forEach(s -> s.setProblemTitle(problem.getTitle()));
+        SubmissionSummary last = submissions.isEmpty() ? null : submissions.get(submissions.size() - 1);
+        return SubmissionPage.builder()
+                .submissions(submissions)
+                .nextCursor(hasMore ? new Cursor(last.getSubmittedAt(), last.getId()).encode() : null)
+                .build();
+    }
+
+    public List<SubmissionSummary> getRecentSubmissions() {
+        List<SubmissionSummary> submissions = submissionRepository.findRecentSummaries(
+                PageRequest.ofSize(RECENT_SUBMISSIONS));
+        submissions.forEach(s -> s.setProblemTitle(problemCache.getProblem(s.getProblemId())
+                .map(Problem::getTitle)
+                .orElse("Unknown")));
+        return submissions;
     }
 
-    private SubmissionResponse buildResponse(Submission submission, Problem problem, 
+    private SubmissionResponse buildResponse(Submission submission, SubmissionContent content, Problem problem,
                                               List<SubmissionResponse.TestCaseResult> testCaseResults) {
         return SubmissionResponse.builder()
                 .id(submission.getId())
@@ -219,20 +824,42 @@ public class JudgeService {
                 .languageId(submission.getLanguageId())
                 .languageName(submission.getLanguageName())
                 .verdict(submission.getVerdict())
+                .judgeMode(submission.getJudgeMode())
+                .lane(submission.getLane())
                 .executionTime(submission.getExecutionTime())
                 .memoryUsed(submission.getMemoryUsed())
-                .output(submission.getOutput())
-                .compileOutput(submission.getCompileOutput())
-                .errorMessage(submission.getErrorMessage())
+                .output(content != null ? content.getOutput() : null)
+                .compileOutput(content != null ? content.getCompileOutput() : null)
+                .errorMessage(content != null ? content.getErrorMessage() : null)
                 .submittedAt(submission.getSubmittedAt())
                 .testCaseResults(testCaseResults)
                 .build();
     }
 
-    private String normalizeOutput(String output) {
-        if (output == null) {
-            return "";
+    private record TestOutcome(int index, TestCase testCase, CodeExecutor.ExecutionResult result,
+                               Submission.Verdict verdict, String actualOutput, String message) {
+        boolean passed() {
+            return verdict == Submission.Verdict.ACCEPTED;
+        }
+    }
+
+    /**
+     * Position in a listing: the (submittedAt, id) of the last submission on the previous page.
+     */
+    private record Cursor(LocalDateTime submittedAt, Long id) {
+
+        String encode() {
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString((submittedAt + "," + id).getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Cursor decode(String cursor) {
+            try {
+                String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(",");
+                return new Cursor(LocalDateTime.parse(parts[0]), Long.parseLong(parts[1]));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor);
+            }
         }
-        return output.trim().replaceAll("\\r\\n", "\n").replaceAll("\\r", "\n");
     }
 }
@@ -0,0 +1,181 @@
+package com.onlinejudge.service;
+
+import com.onlinejudge.model.JudgeJob;
+import com.onlinejudge.model.Submission;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Judges submissions from the shared {@link JudgeJobQueue}, so judging capacity can be added by
+ * starting more processes against the same database (see application-worker.yml).
+ *
+ * A poller thread claims as many jobs as there are idle {@link JudgeQueue} workers and hands them
+ * over; a heartbeat renews the leases of the jobs being judged. Jobs are removed from the table in
+ * bulk by the poller once their verdicts are committed.
+ *
+ * Enabled when: judge.worker.enabled=true (requires judge.queue.mode=database)
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "judge.worker.enabled", havingValue = "true")
+public class JudgeWorker {
+
+    private final JudgeJobQueue jobQueue;
+    private final JudgeQueue judgeQueue;
+    private final JudgeService judgeService;
+
+    @Value("${judge.worker.poll-interval-ms:500}")
+    private long pollIntervalMs;
+
+    // A job claimed this many times was probably taking its workers down with it
+    @Value("${judge.worker.max-attempts:3}")
+    private int maxAttempts;
+
+    private final String workerId = ManagementFactory.getRuntimeMXBean().getName() + "-"
+            + UUID.randomUUID().toString().substring(0, 8);
+
+    private final Set<Long> running = ConcurrentHashMap.newKeySet();
+    private final ConcurrentLinkedQueue<Long> finished = new ConcurrentLinkedQueue<>();
+
+    private volatile boolean polling = true;
+    private Thread poller;
+    private ScheduledExecutorService heartbeat;
+
+    @PostConstruct
+    public void init() {
+        if (!jobQueue.isEnabled()) {
+            throw new IllegalStateException("judge.worker.enabled requires judge.queue.mode=database");
+        }
+        poller = new Thread(this::pollLoop, "judge-job-poller");
+        poller.setDaemon(true);
+        poller.start();
+
+        long renewIntervalMs = TimeUnit.SECONDS.toMillis(jobQueue.getLeaseSeconds()) / 3;
+        heartbeat = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "judge-job-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        heartbeat.scheduleWithFixedDelay(this::renewLeases, renewIntervalMs, renewIntervalMs, TimeUnit.MILLISECONDS);
+        log.info("Judge worker {} polling for jobs every {} ms", workerId, pollIntervalMs);
+    }
+
+    /**
+     * Stop claiming jobs and give the ones being judged time to finish; whatever is still running
+     * afterwards goes back to the queue for another worker.
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        polling = false;
+        poller.interrupt();
+        poller.join(5_000);
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (!running.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+        }
+        heartbeat.shutdownNow();
+        completeFinished();
+        List<Long> unfinished = new ArrayList<>(running);
+        if (!unfinished.isEmpty()) {
+            log.warn("Returning {} unfinished jobs to the queue", unfinished.size());
+            jobQueue.release(workerId, unfinished);
+        }
+    }
+
+    private void pollLoop() {
+        while (polling) {
+            try {
+                completeFinished();
+                int idle = judgeQueue.getWorkerCount() - judgeQueue.getActiveCount() - judgeQueue.getQueuedCount();
+                List<JudgeJob> claimed = idle > 0 ? jobQueue.claim(workerId, idle) : List.of();
+                claimed.forEach(this::start);
+                if (claimed.isEmpty()) {
+                    Thread.sleep(pollIntervalMs);
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                // Most likely the database is unreachable; jobs already claimed keep running
+                log.warn("Polling for judge jobs failed: {}", e.getMessage());
+                try {
+                    Thread.sleep(pollIntervalMs);
+                } catch (InterruptedException ie) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void start(JudgeJob job) {
+        Long submissionId = job.getSubmissionId();
+        running.add(submissionId);
+        // Queue wait is measured from when the API queued the job, on whichever host that was
+        long waitedNanos = Math.max(0, Duration.between(job.getCreatedAt(), LocalDateTime.now()).toNanos());
+        long queuedAt = System.nanoTime() - waitedNanos;
+        CompletableFuture<Submission> saved;
+        try {
+            saved = job.getAttempts() > maxAttempts
+                    ? judgeService.abandonQueued(submissionId,
+                            "Judging was abandoned after " + maxAttempts + " failed attempts")
+                    : judgeService.judgeQueued(job, queuedAt);
+        } catch (JudgeQueueFullException e) {
+            running.remove(submissionId);
+            jobQueue.release(workerId, List.of(submissionId));
+            return;
+        } catch (RuntimeException e) {
+            log.error("Judging submission {} failed", submissionId, e);
+            saved = CompletableFuture.failedFuture(e);
+        }
+        saved.whenComplete((submission, error) -> {
+            running.remove(submissionId);
+            if (error == null) {
+                finished.add(submissionId);
+            } else {
+                // Left for its lease to run out, then it counts as a failed attempt
+                log.warn("Verdict of submission {} was not saved, leaving its job to be retried", submissionId);
+            }
+        });
+    }
+
+    private void completeFinished() {
+        List<Long> ids = new ArrayList<>();
+        Long id;
+        while ((id = finished.poll()) != null) {
+            ids.add(id);
+        }
+        jobQueue.complete(workerId, ids);
+    }
+
+    private void renewLeases() {
+        List<Long> ids = new ArrayList<>(running);
+        try {
+            int renewed = jobQueue.renew(workerId, ids);
+            if (renewed < ids.size()) {
+                // Either just finished, or we were too slow and another worker claimed it
+                log.debug("Renewed {} of {} job leases", renewed, ids.size());
+            }
+        } catch (RuntimeException e) {
+            log.warn("Renewing job leases failed: {}", e.getMessage());
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package com.onlinejudge.service;
 
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
@@ -9,7 +11,6 @@ import java.nio.file.*;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
 import java.util.concurrent.*;
 
 /**
@@ -21,11 +22,21 @@ import java.util.concurrent.*;
  */
 @Service
 @Slf4j
+@RequiredArgsConstructor
 @ConditionalOnProperty(name = "executor.mode", havingValue = "local", matchIfMissing = true)
 public class LocalCodeExecutor implements CodeExecutor {
 
-    private static final String TEMP_DIR = System.getProperty("java.io.tmpdir") + File.separator + "onlinejudge";
+    private final CompilationCache compilationCache;
+    private final ProcessStreamPump streamPump;
+    private final ResourceMonitor resourceMonitor;
+    private final WorkspaceManager workspaceManager;
+
+    @Value("${judge.time.wall-factor:3}")
+    private double wallTimeFactor;
+
     private static final boolean IS_WINDOWS = System.getProperty("os.name").toLowerCase().contains("win");
+    // Compiler output and runtime stderr are kept for display only, so cap them well below the output limit
+    private static final long STDERR_LIMIT_BYTES = 64 * 1024;
 
     // Language ID to configuration mapping
     private static final Map<Integer, LanguageConfig> LANGUAGES = Map.of(
@@ -58,71 +69,99 @@ public class LocalCodeExecutor implements CodeExecutor {
     }
 
     @Override
-    public ExecutionResult execute(String sourceCode, int languageId, String stdin, 
-                                    int timeLimitMs, int memoryLimitKb) {
+    public CompiledProgram compile(String sourceCode, int languageId) {
         LanguageConfig config = LANGUAGES.get(languageId);
         if (config == null) {
-            return ExecutionResult.error("Unsupported language ID: " + languageId);
+            return CompiledProgram.failed(languageId, ExecutionResult.error("Unsupported language ID: " + languageId));
         }
 
-        String executionId = UUID.randomUUID().toString().substring(0, 8);
-        Path workDir = Paths.get(TEMP_DIR, executionId);
+        WorkspaceManager.Workspace workspace;
+        try {
+            workspace = workspaceManager.acquire();
+        } catch (IOException e) {
+            log.warn("No workspace for compilation: {}", e.getMessage());
+            return CompiledProgram.failed(languageId, ExecutionResult.error("Execution failed: " + e.getMessage()));
+        }
+        Path workDir = workspace.getPath();
         
         try {
-            // Create work directory
-            Files.createDirectories(workDir);
-            
             // Write source code to file
-            String filename = config.language.equals("java") ? "Main." + config.extension : "solution." + config.extension;
-            Path sourceFile = workDir.resolve(filename);
+            Path sourceFile = workDir.resolve(config.sourceFileName());
             Files.writeString(sourceFile, sourceCode);
             
-            // Determine executable path for compiled languages
-            String exeName = IS_WINDOWS ? "a.exe" : "a.out";
-            Path exePath = workDir.resolve(exeName);
-            
             long startTime = System.currentTimeMillis();
             
-            // Compile if needed
-            if (config.compileCommand != null) {
-                String compileCmd = config.compileCommand
-                        .replace("{file}", sourceFile.toString())
-                        .replace("{dir}", workDir.toString())
-                        .replace("{exe}", exePath.toString());
+            // Compile if needed, unless the same source was compiled before
+            String cacheKey = config.compileCommand != null
+                    ? compilationCache.key(sourceCode, languageId, config.compileCommand) : null;
+            if (cacheKey != null && !compilationCache.restore(cacheKey, workDir)) {
+                String compileCmd = resolveCommand(config.compileCommand, workDir, config);
                 
-                ExecutionResult compileResult = runProcess(compileCmd, workDir, null, 30000);
+                ExecutionResult compileResult = runProcess(compileCmd, workDir, null, 0, 30000, 0, STDERR_LIMIT_BYTES);
                 
                 if (compileResult.exitCode != 0) {
-                    return ExecutionResult.compilationError(compileResult.stderr);
+                    workspace.close();
+                    return CompiledProgram.failed(languageId, ExecutionResult.compilationError(compileResult.stderr));
                 }
+                compilationCache.store(cacheKey, workDir, List.of(config.sourceFileName()));
             }
             
-            // Execute
-            String runCommand = config.runCommand
-                    .replace("{file}", sourceFile.toString())
-                    .replace("{dir}", workDir.toString())
-                    .replace("{exe}", exePath.toString());
-            
-            ExecutionResult result = runProcess(runCommand, workDir, stdin, timeLimitMs);
-            result.executionTimeMs = System.currentTimeMillis() - startTime;
-            
-            return result;
+            return CompiledProgram.ready(languageId, workDir, System.currentTimeMillis() - startTime,
+                    workspace::close);
             
         } catch (Exception e) {
-            log.error("Execution failed", e);
-            return ExecutionResult.error("Execution failed: " + e.getMessage());
-        } finally {
-            // Cleanup
-            try {
-                deleteDirectory(workDir);
-            } catch (IOException e) {
-                log.warn("Failed to cleanup temp directory: {}", workDir);
-            }
+            log.error("Compilation failed", e);
+            workspace.close();
+            return CompiledProgram.failed(languageId, ExecutionResult.error("Execution failed: " + e.getMessage()));
         }
     }
 
-    private ExecutionResult runProcess(String command, Path workDir, String stdin, int timeoutMs) {
-        try {
+    @Override
+    public ExecutionResult run(CompiledProgram program, Path stdinFile, int timeLimitMs, int memoryLimitKb,
+                               int outputLimitKb) {
+        LanguageConfig config = LANGUAGES.get(program.getLanguageId());
+        if (config == null || !program.isSuccessful()) {
+            return ExecutionResult.error("Program is not ready to run");
+        }
+
+        Path workDir = program.getWorkDir();
+        String runCommand = resolveCommand(config.runCommand, workDir, config);
+        
+        return runProcess(runCommand, workDir, stdinFile, timeLimitMs, wallLimitMs(timeLimitMs), memoryLimitKb,
+                outputLimitKb * 1024L);
+    }
+
+    private String resolveCommand(String command, Path workDir, LanguageConfig config) {
+        // Determine executable path for compiled languages
+        String exeName = IS_WINDOWS ? "a.exe" : "a.out";
+        return command
+                .replace("{file}", workDir.resolve(config.sourceFileName()).toString())
+                .replace("{dir}", workDir.toString())
+                .replace("{exe}", workDir.resolve(exeName).toString());
+    }
+
+    /**
+     * Wall-clock safety limit for a run: only there to stop programs that sleep or block,
+     * since the CPU time limit decides the verdict wherever CPU time is measured.
+     */
+    private int wallLimitMs(int timeLimitMs) {
+        if (!resourceMonitor.isActive()) {
+            return timeLimitMs;
+        }
+        return (int) Math.min(Integer.MAX_VALUE, (long) (timeLimitMs * wallTimeFactor));
+    }
+
+    /**
+     * @param cpuLimitMs CPU time limit, or 0 for none (compilers)
+     * @param wallLimitMs Wall-clock limit after which the process is killed regardless of CPU time
+     * @param memoryLimitKb Memory limit to enforce, or 0 to only measure (compilers)
+     */
+    private ExecutionResult runProcess(String command, Path workDir, Path stdinFile, int cpuLimitMs, int wallLimitMs,
+                                       int memoryLimitKb, long outputLimitBytes) {
+        Process running = null;
+        ProcessStreamPump.Session session = null;
+        long startTime = System.currentTimeMillis();
+        try (ResourceMonitor.Watch watch = resourceMonitor.watch(memoryLimitKb, cpuLimitMs)) {
             ProcessBuilder pb;
             
             if (IS_WINDOWS) {
@@ -130,82 +169,103 @@ public class LocalCodeExecutor implements CodeExecutor {
                 pb = new ProcessBuilder("cmd", "/c", command);
             } else {
                 // Linux/Mac: use bash -c
-                pb = new ProcessBuilder("bash", "-c", command);
+                pb = new ProcessBuilder("bash", "-c", watch.wrap(command));
             }
             
             pb.directory(workDir.toFile());
             pb.redirectErrorStream(false);
+            if (stdinFile != null) {
+                // The kernel feeds the file straight to the program
+                pb.redirectInput(stdinFile.toFile());
+            }
             
             Process process = pb.start();
+            running = process;
+            watch.attach(process);
             
-            // Write stdin if provided
-            if (stdin != null && !stdin.isEmpty()) {
-                try (OutputStream os = process.getOutputStream()) {
-                    os.write(stdin.getBytes());
-                    os.flush();
-                }
-            } else {
-                process.getOutputStream().close();
+            // Read stdout/stderr concurrently; stdout past the output limit kills the process
+            OutputCapture stdoutCapture = new OutputCapture(outputLimitBytes, () -> ProcessStreamPump.destroyTree(process));
+            OutputCapture stderrCapture = OutputCapture.truncating(STDERR_LIMIT_BYTES);
+            session = streamPump.attach(process, stdoutCapture, stderrCapture);
+            
+            boolean completed = process.waitFor(wallLimitMs, TimeUnit.MILLISECONDS);
+            
+            if (!completed) {
+                session.abort();
+                watch.close();
+                return timeLimitExceeded(watch, startTime);
             }
             
-            // Read stdout and stderr with timeout
-            ExecutorService executor = Executors.newFixedThreadPool(2);
-            Future<String> stdoutFuture = executor.submit(() -> readStream(process.getInputStream()));
-            Future<String> stderrFuture = executor.submit(() -> readStream(process.getErrorStream()));
+            session.await(1000);
+            String stderr = stderrCapture.toString();
+            watch.close();
             
-            boolean completed = process.waitFor(timeoutMs, TimeUnit.MILLISECONDS);
+            if (watch.isCpuLimitExceeded()) {
+                return timeLimitExceeded(watch, startTime);
+            }
             
-            if (!completed) {
-                process.destroyForcibly();
-                executor.shutdownNow();
-                return ExecutionResult.timeLimitExceeded();
+            if (watch.isMemoryLimitExceeded()) {
+                return ExecutionResult.memoryLimitExceeded(watch.getPeakKb());
             }
             
-            String stdout = stdoutFuture.get(1, TimeUnit.SECONDS);
-            String stderr = stderrFuture.get(1, TimeUnit.SECONDS);
-            executor.shutdown();
+            if (stdoutCapture.isLimitExceeded()) {
+                return ExecutionResult.outputLimitExceeded();
+            }
             
             int exitCode = process.exitValue();
             
+            ExecutionResult result;
             if (exitCode != 0 && (stderr.contains("Exception") || stderr.contains("Error") || 
                     stderr.contains("Segmentation fault") || stderr.contains("core dumped"))) {
-                return ExecutionResult.runtimeError(stderr, exitCode);
+                result = ExecutionResult.runtimeError(stderr, exitCode);
+            } else {
+                result = new ExecutionResult(stdoutCapture.toByteArray(), stderr, exitCode, 0);
             }
-            
-            return new ExecutionResult(stdout, stderr, exitCode, 0);
+            result.memoryUsedKb = watch.getPeakKb();
+            result.executionTimeMs = measuredTime(watch, startTime);
+            return result;
             
         } catch (TimeoutException e) {
-            return ExecutionResult.timeLimitExceeded();
+            // Exited, but something it started still holds the output open
+            session.abort();
+            ExecutionResult result = ExecutionResult.timeLimitExceeded();
+            result.executionTimeMs = System.currentTimeMillis() - startTime;
+            return result;
+        } catch (InterruptedException e) {
+            // Cancelled by the judge (e.g. an earlier test already failed)
+            if (session != null) {
+                session.abort();
+            } else if (running != null) {
+                ProcessStreamPump.destroyTree(running);
+            }
+            Thread.currentThread().interrupt();
+            return ExecutionResult.error("Execution cancelled");
         } catch (Exception e) {
+            if (running != null) {
+                ProcessStreamPump.destroyTree(running);
+            }
             return ExecutionResult.error("Process execution failed: " + e.getMessage());
         }
     }
 
-    private String readStream(InputStream is) throws IOException {
-        StringBuilder sb = new StringBuilder();
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(is))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (sb.length() > 0) sb.append("\n");
-                sb.append(line);
-            }
-        }
-        return sb.toString();
+    private ExecutionResult timeLimitExceeded(ResourceMonitor.Watch watch, long startTime) {
+        ExecutionResult result = ExecutionResult.timeLimitExceeded();
+        result.executionTimeMs = measuredTime(watch, startTime);
+        result.memoryUsedKb = watch.getPeakKb();
+        return result;
     }
 
-    private void deleteDirectory(Path path) throws IOException {
-        if (Files.exists(path)) {
-            Files.walk(path)
-                    .sorted((a, b) -> b.compareTo(a))
-                    .forEach(p -> {
-                        try {
-                            Files.delete(p);
-                        } catch (IOException e) {
-                            log.warn("Failed to delete: {}", p);
-                        }
-                    });
-        }
+    /**
+     * CPU time where it is measured, wall-clock time otherwise.
+     */
+    private static long measuredTime(ResourceMonitor.Watch watch, long startTime) {
+        long cpuTimeMs = watch.getCpuTimeMs();
+        return cpuTimeMs >= 0 ? cpuTimeMs : System.currentTimeMillis() - startTime;
     }
 
-    private record LanguageConfig(String language, String extension, String compileCommand, String runCommand) {}
+    private record LanguageConfig(String language, String extension, String compileCommand, String runCommand) {
+        String sourceFileName() {
+            return language.equals("java") ? "Main." + extension : "solution." + extension;
+        }
+    }
 }
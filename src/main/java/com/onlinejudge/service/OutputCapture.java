@@ -0,0 +1,88 @@
+package com.onlinejudge.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Captures a process stream as raw bytes into a buffer that never grows past a fixed limit.
+ * When the limit is hit the overflow callback runs once (executors use it to kill the
+ * process); the rest of the stream is drained and discarded so the process never blocks on a full pipe.
+ */
+class OutputCapture {
+
+    private static final int CHUNK_SIZE = 8192;
+
+    private final long limitBytes;
+    private final Runnable onLimitExceeded;
+
+    private byte[] buffer = new byte[CHUNK_SIZE];
+    private int length;
+    private volatile boolean limitExceeded;
+
+    /**
+     * @param limitBytes Maximum number of bytes kept
+     * @param onLimitExceeded Called once when the stream produces more than {@code limitBytes}
+     */
+    OutputCapture(long limitBytes, Runnable onLimitExceeded) {
+        this.limitBytes = limitBytes;
+        this.onLimitExceeded = onLimitExceeded;
+    }
+
+    /**
+     * Capture that silently truncates instead of reacting to overflow.
+     */
+    static OutputCapture truncating(long limitBytes) {
+        return new OutputCapture(limitBytes, () -> {});
+    }
+
+    /**
+     * Read the stream to the end. Returns this capture for use as a task result.
+     * A stream closed underneath us (the process was killed) ends the capture with what was read so far.
+     */
+    OutputCapture drain(InputStream in) {
+        try (in) {
+            byte[] chunk = new byte[CHUNK_SIZE];
+            int n;
+            while ((n = in.read(chunk)) != -1) {
+                append(chunk, n);
+            }
+        } catch (IOException e) {
+            // Process destroyed while reading; keep the partial output
+        }
+        return this;
+    }
+
+    private void append(byte[] chunk, int n) {
+        if (limitExceeded) {
+            return;
+        }
+        int keep = (int) Math.min(n, limitBytes - length);
+        if (keep > 0) {
+            if (length + keep > buffer.length) {
+                long grown = Math.max((long) buffer.length * 2, (long) length + keep);
+                buffer = Arrays.copyOf(buffer, (int) Math.min(grown, limitBytes));
+            }
+            System.arraycopy(chunk, 0, buffer, length, keep);
+            length += keep;
+        }
+        if (keep < n) {
+            limitExceeded = true;
+            onLimitExceeded.run();
+        }
+    }
+
+    boolean isLimitExceeded() {
+        return limitExceeded;
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(buffer, length);
+    }
+
+    @Override
+    public String toString() {
+        return new String(buffer, 0, length, StandardCharsets.UTF_8);
+    }
+}
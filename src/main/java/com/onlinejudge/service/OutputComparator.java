@@ -0,0 +1,287 @@
+package com.onlinejudge.service;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Compares program output with expected output by streaming through both byte by byte.
+ * Neither side is copied or normalized up front, and the comparison stops at the first difference.
+ *
+ * Whitespace is handled on raw bytes: every byte up to 0x20 is whitespace, which is the same
+ * set {@link String#trim()} removes and never appears inside a multi-byte UTF-8 sequence.
+ */
+public final class OutputComparator {
+
+    private static final int EOF = -1;
+
+    public enum Mode {
+        /** Ignore leading/trailing whitespace and treat CRLF and CR as LF (the original judge semantics). */
+        NORMALIZED,
+        /** Byte-for-byte equality. */
+        EXACT,
+        /** Compare whitespace-separated tokens; amount and kind of whitespace do not matter. */
+        TOKENS,
+        /** Like TOKENS, but numeric tokens match within an absolute or relative tolerance. */
+        FLOAT
+    }
+
+    private OutputComparator() {
+    }
+
+    /**
+     * Compare two outputs. The streams are read but not closed.
+     */
+    public static Result compare(InputStream actual, InputStream expected, Mode mode) throws IOException {
+        return compare(actual, expected, mode, 0);
+    }
+
+    /**
+     * Compare two outputs, allowing numeric tokens to differ by {@code epsilon} in FLOAT mode.
+     * The streams are read but not closed.
+     */
+    public static Result compare(InputStream actual, InputStream expected, Mode mode, double epsilon)
+            throws IOException {
+        InputStream a = new BufferedInputStream(actual);
+        InputStream e = new BufferedInputStream(expected);
+        return switch (mode) {
+            case EXACT -> compareBytes(a::read, e::read);
+            case NORMALIZED -> compareBytes(new NormalizingReader(a), new NormalizingReader(e));
+            case TOKENS -> compareTokens(new TokenReader(a), new TokenReader(e), -1);
+            case FLOAT -> compareTokens(new TokenReader(a), new TokenReader(e), epsilon);
+        };
+    }
+
+    private static Result compareBytes(ByteSource actual, ByteSource expected) throws IOException {
+        long line = 1;
+        long column = 1;
+        while (true) {
+            int a = actual.next();
+            int e = expected.next();
+            if (a != e) {
+                if (e == EOF) {
+                    return Result.mismatch(line, column, "Extra output at line " + line + ", column " + column);
+                }
+                if (a == EOF) {
+                    return Result.mismatch(line, column, "Output ended early at line " + line + ", column " + column);
+                }
+                return Result.mismatch(line, column, "Output differs at line " + line + ", column " + column);
+            }
+            if (a == EOF) {
+                return Result.MATCH;
+            }
+            if (e == '\n') {
+                line++;
+                column = 1;
+            } else {
+                column++;
+            }
+        }
+    }
+
+    /**
+     * @param epsilon Tolerance for numeric tokens, or negative to compare tokens exactly
+     */
+    private static Result compareTokens(TokenReader actual, TokenReader expected, double epsilon)
+            throws IOException {
+        long token = 1;
+        while (true) {
+            boolean hasActual = actual.nextToken();
+            boolean hasExpected = expected.nextToken();
+            if (!hasActual && !hasExpected) {
+                return Result.MATCH;
+            }
+            long line = expected.tokenLine();
+            if (!hasExpected) {
+                return Result.mismatch(actual.tokenLine(), 0, "Extra output starting at token " + token);
+            }
+            if (!hasActual) {
+                return Result.mismatch(line, 0, "Output ended early, expected token " + token);
+            }
+            if (!actual.sameToken(expected) && !(epsilon >= 0 && expected.closeTo(actual, epsilon))) {
+                return Result.mismatch(line, 0, "Token " + token + " differs (line " + line + ")");
+            }
+            token++;
+        }
+    }
+
+    /**
+     * Outcome of a comparison. Positions are 1-based and refer to the expected output;
+     * column is 0 when the mode compares tokens.
+     */
+    public record Result(boolean matches, long line, long column, String message) {
+        static final Result MATCH = new Result(true, 0, 0, null);
+
+        static Result mismatch(long line, long column, String message) {
+            return new Result(false, line, column, message);
+        }
+    }
+
+    @FunctionalInterface
+    private interface ByteSource {
+        int next() throws IOException;
+    }
+
+    private static boolean isWhitespace(int b) {
+        return b != EOF && b <= ' ';
+    }
+
+    /**
+     * Yields the stream as {@code trim()} plus CRLF/CR-to-LF would, without buffering more than
+     * one run of whitespace: a run is held back until a non-whitespace byte shows it is not trailing.
+     */
+    private static final class NormalizingReader implements ByteSource {
+        private final InputStream in;
+        private int pushback = -2;
+        private boolean started;
+        private byte[] run = new byte[64];
+        private int runLength;
+        private int runPosition;
+        private int afterRun = -2;
+
+        NormalizingReader(InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public int next() throws IOException {
+            if (runPosition < runLength) {
+                return run[runPosition++];
+            }
+            if (afterRun != -2) {
+                int b = afterRun;
+                afterRun = -2;
+                return b;
+            }
+
+            int b = readLineNormalized();
+            if (!started) {
+                while (isWhitespace(b)) {
+                    b = readLineNormalized();
+                }
+                started = true;
+                return b;
+            }
+            if (!isWhitespace(b)) {
+                return b;
+            }
+
+            runLength = 0;
+            runPosition = 0;
+            while (isWhitespace(b)) {
+                if (runLength == run.length) {
+                    run = Arrays.copyOf(run, run.length * 2);
+                }
+                run[runLength++] = (byte) b;
+                b = readLineNormalized();
+            }
+            if (b == EOF) {
+                // Trailing whitespace
+                runLength = 0;
+                return EOF;
+            }
+            afterRun = b;
+            return run[runPosition++];
+        }
+
+        private int readLineNormalized() throws IOException {
+            int b = read();
+            if (b == '\r') {
+                int next = read();
+                if (next != '\n') {
+                    pushback = next;
+                }
+                return '\n';
+            }
+            return b;
+        }
+
+        private int read() throws IOException {
+            if (pushback != -2) {
+                int b = pushback;
+                pushback = -2;
+                return b;
+            }
+            return in.read();
+        }
+    }
+
+    /**
+     * Reads whitespace-separated tokens one at a time into a reusable buffer.
+     */
+    private static final class TokenReader {
+        private final InputStream in;
+        private byte[] token = new byte[64];
+        private int tokenLength;
+        private long line = 1;
+        private long tokenLine = 1;
+
+        TokenReader(InputStream in) {
+            this.in = in;
+        }
+
+        boolean nextToken() throws IOException {
+            int b = in.read();
+            while (isWhitespace(b)) {
+                if (b == '\n') {
+                    line++;
+                }
+                b = in.read();
+            }
+            if (b == EOF) {
+                return false;
+            }
+            tokenLine = line;
+            tokenLength = 0;
+            while (b != EOF && !isWhitespace(b)) {
+                if (tokenLength == token.length) {
+                    token = Arrays.copyOf(token, token.length * 2);
+                }
+                token[tokenLength++] = (byte) b;
+                b = in.read();
+            }
+            if (b == '\n') {
+                line++;
+            }
+            return true;
+        }
+
+        long tokenLine() {
+            return tokenLine;
+        }
+
+        boolean sameToken(TokenReader other) {
+            return Arrays.equals(token, 0, tokenLength, other.token, 0, other.tokenLength);
+        }
+
+        /**
+         * True if both tokens are finite numbers within {@code epsilon} of each other,
+         * absolutely or relative to this reader's (the expected) value.
+         */
+        boolean closeTo(TokenReader other, double epsilon) {
+            double expected = toNumber();
+            double actual = other.toNumber();
+            if (!Double.isFinite(expected) || !Double.isFinite(actual)) {
+                return false;
+            }
+            return Math.abs(actual - expected) <= epsilon * Math.max(1.0, Math.abs(expected));
+        }
+
+        private double toNumber() {
+            // Only digits, sign, point and exponent; rejects "NaN", "Infinity" and hex floats
+            for (int i = 0; i < tokenLength; i++) {
+                byte b = token[i];
+                if (!(b >= '0' && b <= '9') && b != '-' && b != '+' && b != '.' && b != 'e' && b != 'E') {
+                    return Double.NaN;
+                }
+            }
+            try {
+                return Double.parseDouble(new String(token, 0, tokenLength, StandardCharsets.US_ASCII));
+            } catch (NumberFormatException e) {
+                return Double.NaN;
+            }
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.onlinejudge.service;
+
+import com.onlinejudge.model.Problem;
+import com.onlinejudge.model.TestCase;
+import com.onlinejudge.repository.ProblemRepository;
+import com.onlinejudge.repository.TestCaseRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process cache of problems and their ordered test case metadata, so judging a submission
+ * does not query the database for data that rarely changes.
+ * Entries are evicted least-recently-used once their estimated size passes {@code judge.problem-cache.max-size-mb}.
+ * {@link ProblemService} invalidates a problem whenever it or its test cases change.
+ *
+ * Cached entities are shared between threads and must not be modified by callers.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class ProblemCache {
+
+    // Rough heap cost of an entity apart from its strings
+    private static final long ENTITY_OVERHEAD_BYTES = 256;
+
+    private final ProblemRepository problemRepository;
+    private final TestCaseRepository testCaseRepository;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${judge.problem-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${judge.problem-cache.max-size-mb:64}")
+    private long maxSizeMb;
+
+    // Access-ordered: iteration starts at the least recently used entry
+    private final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+
+    // Bumped on every invalidation, so a load that raced with one is not cached
+    private final AtomicLong generation = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        FunctionCounter.builder("judge.problem.cache.hits", hits, AtomicLong::get)
+                .description("Problem lookups served from the cache")
+                .register(meterRegistry);
+        FunctionCounter.builder("judge.problem.cache.misses", misses, AtomicLong::get)
+                .description("Problem lookups that went to the database")
+                .register(meterRegistry);
+        Gauge.builder("judge.problem.cache.entries", this, ProblemCache::getEntryCount)
+                .description("Problems in the cache")
+                .register(meterRegistry);
+        Gauge.builder("judge.problem.cache.size", this, ProblemCache::getTotalBytes)
+                .description("Estimated heap size of the cached problems")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        log.info("Problem cache {} (max {} MB)", enabled ? "enabled" : "disabled", maxSizeMb);
+    }
+
+    public Optional<Problem> getProblem(Long problemId) {
+        return get(problemId).map(Entry::problem);
+    }
+
+    /**
+     * Test cases of a problem in judging order, without their data (see {@link TestDataStore}).
+     */
+    public List<TestCase> getTestCases(Long problemId) {
+        return get(problemId).map(Entry::testCases).orElse(List.of());
+    }
+
+    /**
+     * Drop a problem so the next lookup reads it from the database again.
+     */
+    public void invalidate(Long problemId) {
+        synchronized (this) {
+            generation.incrementAndGet();
+            Entry removed = entries.remove(problemId);
+            if (removed != null) {
+                totalBytes -= removed.bytes();
+            }
+        }
+    }
+
+    private Optional<Entry> get(Long problemId) {
+        if (!enabled) {
+            return load(problemId);
+        }
+        long loadGeneration;
+        synchronized (this) {
+            Entry entry = entries.get(problemId);
+            if (entry != null) {
+                hits.incrementAndGet();
+                return Optional.of(entry);
+            }
+            loadGeneration = generation.get();
+        }
+        misses.incrementAndGet();
+
+        // Query outside the lock; two threads missing on the same problem both load it, which is harmless
+        Optional<Entry> loaded = load(problemId);
+        loaded.ifPresent(entry -> {
+            synchronized (this) {
+                if (generation.get() != loadGeneration || entries.containsKey(problemId)
+                        || entry.bytes() > maxSizeMb * 1024 * 1024) {
+                    return;
+                }
+                entries.put(problemId, entry);
+                totalBytes += entry.bytes();
+                evict();
+            }
+        });
+        return loaded;
+    }
+
+    private Optional<Entry> load(Long problemId) {
+        return problemRepository.findById(problemId).map(problem -> {
+            List<TestCase> testCases = List.copyOf(testCaseRepository.findByProblemIdOrderByOrderIndexAsc(problemId));
+            return new Entry(problem, testCases, estimateBytes(problem, testCases));
+        });
+    }
+
+    private void evict() {
+        long maxBytes = maxSizeMb * 1024 * 1024;
+        Iterator<Map.Entry<Long, Entry>> it = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            totalBytes -= it.next().getValue().bytes();
+            it.remove();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    private static long estimateBytes(Problem problem, List<TestCase> testCases) {
+        long bytes = ENTITY_OVERHEAD_BYTES + stringBytes(problem.getTitle()) + stringBytes(problem.getDescription())
+                + stringBytes(problem.getCheckerSource());
+        for (TestCase testCase : testCases) {
+            bytes += ENTITY_OVERHEAD_BYTES + stringBytes(testCase.getInputHash())
+                    + stringBytes(testCase.getExpectedOutputHash());
+        }
+        return bytes;
+    }
+
+    private static long stringBytes(String value) {
+        // Latin-1 strings take a byte per char, others two; assume the worst
+        return value != null ? 40 + 2L * value.length() : 0;
+    }
+
+    private record Entry(Problem problem, List<TestCase> testCases, long bytes) {
+    }
+}
@@ -16,6 +16,12 @@ public class ProblemService {
 
     private final ProblemRepository problemRepository;
     private final TestCaseRepository testCaseRepository;
+    private final CheckerService checkerService;
+    private final TestDataStore testDataStore;
+    private final ProblemCache problemCache;
+
+    // Sample tests are shown on the problem page; anything bigger is cut off there
+    private static final int SAMPLE_PREVIEW_BYTES = 64 * 1024;
 
     public List<ProblemResponse> getAllProblems() {
         return problemRepository.findAllByOrderByIdAsc()
@@ -25,23 +31,41 @@ public class ProblemService {
     }
 
     public ProblemResponse getProblemById(Long id) {
-        Problem problem = problemRepository.findById(id)
+        Problem problem = problemCache.getProblem(id)
                 .orElseThrow(() -> new IllegalArgumentException("Problem not found: " + id));
         
         List<TestCase> visibleTestCases = testCaseRepository
                 .findByProblemIdAndIsHiddenFalseOrderByOrderIndexAsc(id);
+        for (TestCase tc : visibleTestCases) {
+            tc.setInput(testDataStore.preview(tc.getInputHash(), SAMPLE_PREVIEW_BYTES));
+            tc.setExpectedOutput(testDataStore.preview(tc.getExpectedOutputHash(), SAMPLE_PREVIEW_BYTES));
+        }
         
         return ProblemResponse.from(problem, visibleTestCases);
     }
 
     public Problem createProblem(Problem problem) {
-        return problemRepository.save(problem);
+        checkerService.validate(problem);
+        Problem saved = problemRepository.save(problem);
+        problemCache.invalidate(saved.getId());
+        return saved;
     }
 
     public TestCase addTestCase(Long problemId, TestCase testCase) {
-        problemRepository.findById(problemId)
+        problemCache.getProblem(problemId)
                 .orElseThrow(() -> new IllegalArgumentException("Problem not found: " + problemId));
+        if (testCase.getExpectedOutput() == null) {
+            throw new IllegalArgumentException("expectedOutput is required");
+        }
         testCase.setProblemId(problemId);
-        return testCaseRepository.save(testCase);
+
+        // Only hashes go to the database; the data itself goes to the test data store
+        testCase.setInputHash(testDataStore.put(testCase.getInput()));
+        testCase.setExpectedOutputHash(testDataStore.put(testCase.getExpectedOutput()));
+        testCase.setInputSize(testDataStore.size(testCase.getInputHash()));
+        testCase.setExpectedOutputSize(testDataStore.size(testCase.getExpectedOutputHash()));
+        TestCase saved = testCaseRepository.save(testCase);
+        problemCache.invalidate(problemId);
+        return saved;
     }
 }
@@ -0,0 +1,203 @@
+package com.onlinejudge.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shared threads that drain the stdout/stderr of judged processes. Stdin is not pumped:
+ * executors redirect it from a file so the kernel feeds it.
+ * Replaces a two-thread executor per process launch: idle threads are reused, new ones are only
+ * started while all are busy, and they exit after a minute without work.
+ *
+ * A stream is never queued behind others: a program whose output is not drained blocks on a full
+ * pipe and would be killed for a time limit it never used. Instead the threads are capped at two per
+ * program that can run at once: judge workers times parallel test runs, plus one checker or compiler
+ * per worker ({@code judge.process-io.max-threads} overrides this). A launch past the cap fails at once
+ * with a judge error rather than waiting, and is counted in {@code judge.process.io.rejected}.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class ProcessStreamPump {
+
+    // How long a stream waits for a thread that is just finishing before the launch is rejected
+    private static final long HANDOFF_WAIT_MS = 100;
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${judge.process-io.max-threads:0}")
+    private int maxThreads;
+
+    @Value("${judge.queue.workers:0}")
+    private int workers;
+
+    @Value("${judge.parallel.enabled:false}")
+    private boolean parallelEnabled;
+
+    @Value("${judge.parallel.max-per-submission:4}")
+    private int maxParallelPerSubmission;
+
+    private ThreadPoolExecutor pool;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private Counter rejected;
+
+    @PostConstruct
+    public void init() {
+        int limit = maxThreads > 0 ? maxThreads : defaultMaxThreads();
+        rejected = Counter.builder("judge.process.io.rejected")
+                .description("Process launches failed because every pump thread was busy")
+                .register(meterRegistry);
+        pool = new ThreadPoolExecutor(0, limit, 60, TimeUnit.SECONDS, new SynchronousQueue<>(),
+                new PumpThreadFactory(), (task, executor) -> handOff(task, executor));
+
+        Gauge.builder("judge.process.io.inflight", inFlight, AtomicInteger::get)
+                .description("Process streams currently being drained")
+                .register(meterRegistry);
+        Gauge.builder("judge.process.io.threads", pool, ThreadPoolExecutor::getPoolSize)
+                .description("Live pump threads")
+                .register(meterRegistry);
+        Gauge.builder("judge.process.io.limit", pool, ThreadPoolExecutor::getMaximumPoolSize)
+                .description("Most pump threads that may run at once")
+                .register(meterRegistry);
+        log.info("Process stream pump: at most {} threads", limit);
+    }
+
+    private int defaultMaxThreads() {
+        int judgeWorkers = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+        int runsPerWorker = parallelEnabled ? Math.max(1, maxParallelPerSubmission) : 1;
+        // Plus one checker or compiler per worker; two streams per process
+        return 2 * judgeWorkers * (runsPerWorker + 1);
+    }
+
+    /**
+     * Start draining the process output into the captures. Stdin, unless redirected, is closed
+     * so the program sees end of input. The caller waits for the process itself and then calls
+     * {@link Session#await}.
+     */
+    public Session attach(Process process, OutputCapture stdout, OutputCapture stderr) throws IOException {
+        process.getOutputStream().close();
+        Future<OutputCapture> out = null;
+        try {
+            out = submit(() -> stdout.drain(process.getInputStream()));
+            Future<OutputCapture> err = submit(() -> stderr.drain(process.getErrorStream()));
+            return new Session(process, out, err);
+        } catch (RejectedExecutionException e) {
+            destroyTree(process);
+            if (out != null) {
+                out.cancel(true);
+            }
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    public int getInFlightCount() {
+        return inFlight.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Kill a process together with everything it started. A child that inherited stdout
+     * (e.g. the program under {@code bash -c}) would otherwise keep the pipe open and the drain blocked.
+     */
+    static void destroyTree(Process process) {
+        process.descendants().forEach(ProcessHandle::destroyForcibly);
+        process.destroyForcibly();
+    }
+
+    /**
+     * Give a thread that is about to go idle a moment to take the stream, then fail the launch.
+     */
+    private void handOff(Runnable task, ThreadPoolExecutor executor) {
+        if (executor.isShutdown()) {
+            throw new RejectedExecutionException("Process stream pump is shut down");
+        }
+        try {
+            if (executor.getQueue().offer(task, HANDOFF_WAIT_MS, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        rejected.increment();
+        throw new RejectedExecutionException("Too many programs running at once (all "
+                + executor.getMaximumPoolSize() + " output pump threads busy)");
+    }
+
+    private <T> Future<T> submit(Callable<T> task) {
+        return pool.submit(() -> {
+            inFlight.incrementAndGet();
+            try {
+                return task.call();
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        });
+    }
+
+    /**
+     * Streams of one running process.
+     */
+    public static class Session {
+        private final Process process;
+        private final Future<OutputCapture> stdout;
+        private final Future<OutputCapture> stderr;
+
+        Session(Process process, Future<OutputCapture> stdout, Future<OutputCapture> stderr) {
+            this.process = process;
+            this.stdout = stdout;
+            this.stderr = stderr;
+        }
+
+        /**
+         * Wait for both output streams to reach end of file after the process has exited.
+         */
+        public void await(long timeoutMs) throws InterruptedException, ExecutionException, TimeoutException {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+            stdout.get(timeoutMs, TimeUnit.MILLISECONDS);
+            stderr.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * Kill the process tree and release the pump threads still attached to it.
+         */
+        public void abort() {
+            destroyTree(process);
+            stdout.cancel(true);
+            stderr.cancel(true);
+        }
+    }
+
+    private static class PumpThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "process-io-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,385 @@
+package com.onlinejudge.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.UUID;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Measures and enforces the memory and CPU time of programs run by {@link LocalCodeExecutor} on Linux.
+ *
+ * With {@code judge.resources.cgroup-root} pointing at a delegated cgroup v2 directory, each run gets its
+ * own child cgroup: the kernel enforces memory.max and reports memory.peak, OOM kills and cpu.stat.
+ * Without it, the process tree is sampled from /proc and killed once it goes over a limit, and the
+ * final CPU time comes from the shell's rusage ({@link CpuTimes}). Sampling threads are sized to the
+ * runs that can be in progress at once (judge workers times parallel test runs, plus a checker or compiler
+ * per worker, or {@code judge.resources.sampler-threads}), so a busy judge does not sample less often.
+ * On other platforms nothing is measured or limited and executors fall back to wall-clock time.
+ */
+@Component
+@Slf4j
+public class ResourceMonitor {
+
+    private static final boolean IS_LINUX = System.getProperty("os.name").toLowerCase().contains("linux");
+    private static final String TIMES_DIR = System.getProperty("java.io.tmpdir") + File.separator + "onlinejudge-times";
+    // USER_HZ, the unit of CPU times in /proc/<pid>/stat, when it cannot be read
+    private static final long DEFAULT_CLOCK_TICKS_PER_SECOND = 100;
+
+    @Value("${judge.resources.enabled:true}")
+    private boolean enabled;
+
+    @Value("${judge.resources.cgroup-root:}")
+    private String cgroupRoot;
+
+    @Value("${judge.resources.sample-interval-ms:10}")
+    private int sampleIntervalMs;
+
+    @Value("${judge.resources.sampler-threads:0}")
+    private int samplerThreads;
+
+    @Value("${judge.queue.workers:0}")
+    private int workers;
+
+    @Value("${judge.parallel.enabled:false}")
+    private boolean parallelEnabled;
+
+    @Value("${judge.parallel.max-per-submission:4}")
+    private int maxParallelPerSubmission;
+
+    private Path cgroupDir;
+    private long clockTicksPerSecond = DEFAULT_CLOCK_TICKS_PER_SECOND;
+    private ScheduledThreadPoolExecutor sampler;
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (!isActive()) {
+            log.info("Resource accounting disabled, using wall-clock time");
+            return;
+        }
+        Files.createDirectories(Paths.get(TIMES_DIR));
+        clockTicksPerSecond = readClockTicks();
+        int threads = samplerThreads > 0 ? samplerThreads : defaultSamplerThreads();
+        AtomicInteger counter = new AtomicInteger();
+        sampler = new ScheduledThreadPoolExecutor(threads, r -> {
+            Thread thread = new Thread(r, "resource-monitor-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Idle judges keep no sampling threads
+        sampler.setKeepAliveTime(60, TimeUnit.SECONDS);
+        sampler.allowCoreThreadTimeOut(true);
+        sampler.setRemoveOnCancelPolicy(true);
+        if (!cgroupRoot.isBlank()) {
+            Path root = Paths.get(cgroupRoot);
+            if (Files.isWritable(root) && readFile(root.resolve("cgroup.subtree_control")).contains("memory")) {
+                cgroupDir = root;
+            } else {
+                log.warn("{} is not a writable cgroup v2 directory with the memory controller enabled, "
+                        + "falling back to /proc sampling", root);
+            }
+        }
+        log.info("Resource accounting via {} ({} sampler threads, {} clock ticks per second)",
+                cgroupDir != null ? "cgroup v2 at " + cgroupDir : "/proc sampling", threads, clockTicksPerSecond);
+    }
+
+    private int defaultSamplerThreads() {
+        int judgeWorkers = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+        int runsPerWorker = parallelEnabled ? Math.max(1, maxParallelPerSubmission) : 1;
+        // Plus one checker or compiler per worker
+        return judgeWorkers * (runsPerWorker + 1);
+    }
+
+    /**
+     * USER_HZ of this system, from {@code getconf CLK_TCK}.
+     */
+    private static long readClockTicks() {
+        try {
+            Process process = new ProcessBuilder("getconf", "CLK_TCK")
+                    .redirectErrorStream(true)
+                    .start();
+            String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.US_ASCII).trim();
+            if (process.waitFor(5, TimeUnit.SECONDS) && process.exitValue() == 0) {
+                long ticks = Long.parseLong(output);
+                if (ticks > 0) {
+                    return ticks;
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            log.debug("getconf CLK_TCK failed: {}", e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.warn("Could not read the clock tick rate, assuming {} per second", DEFAULT_CLOCK_TICKS_PER_SECOND);
+        return DEFAULT_CLOCK_TICKS_PER_SECOND;
+    }
+
+    /**
+     * True if runs are measured; otherwise every watch reports no CPU time and no memory.
+     */
+    public boolean isActive() {
+        return enabled && IS_LINUX;
+    }
+
+    /**
+     * Prepare accounting for one run. Call {@link Watch#wrap} on the command before starting it
+     * and {@link Watch#attach} right after.
+     *
+     * @param memoryLimitKb Memory limit to enforce, or 0 to only measure
+     * @param cpuLimitMs CPU time limit to enforce, or 0 to only measure
+     */
+    public Watch watch(int memoryLimitKb, int cpuLimitMs) {
+        if (!isActive()) {
+            return new Watch(0, 0, null);
+        }
+        Path cgroup = null;
+        if (cgroupDir != null) {
+            cgroup = cgroupDir.resolve("oj-" + UUID.randomUUID().toString().substring(0, 8));
+            try {
+                Files.createDirectory(cgroup);
+                if (memoryLimitKb > 0) {
+                    Files.writeString(cgroup.resolve("memory.max"), Long.toString(memoryLimitKb * 1024L));
+                    writeQuietly(cgroup.resolve("memory.swap.max"), "0");
+                }
+            } catch (IOException e) {
+                log.warn("Failed to create cgroup {}: {}", cgroup, e.getMessage());
+                cgroup = null;
+            }
+        }
+        return new Watch(memoryLimitKb, cpuLimitMs, cgroup);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (sampler != null) {
+            sampler.shutdownNow();
+        }
+    }
+
+    private static String readFile(Path path) {
+        try {
+            return Files.readString(path);
+        } catch (IOException e) {
+            // The process exited or the file does not exist on this kernel
+            return "";
+        }
+    }
+
+    /**
+     * Value of a "name value" or "Name: value kB" line, 0 if absent.
+     */
+    private static long field(String text, String name) {
+        int start = text.indexOf(name);
+        if (start < 0) {
+            return 0;
+        }
+        int end = text.indexOf('\n', start);
+        String value = text.substring(start + name.length(), end < 0 ? text.length() : end).trim();
+        int space = value.indexOf(' ');
+        try {
+            return Long.parseLong(space < 0 ? value : value.substring(0, space));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static long readLong(Path path) {
+        try {
+            return Long.parseLong(readFile(path).trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * utime + stime + cutime + cstime of a process in ms, from /proc/[pid]/stat.
+     */
+    private long cpuTimeMs(long pid) {
+        String stat = readFile(Paths.get("/proc", Long.toString(pid), "stat"));
+        // The command name can contain spaces, so count fields from the closing parenthesis (field 2)
+        int close = stat.lastIndexOf(')');
+        if (close < 0) {
+            return 0;
+        }
+        String[] fields = stat.substring(close + 2).split(" ");
+        if (fields.length < 15) {
+            return 0;
+        }
+        long ticks = 0;
+        // Fields 14-17 of the stat line, offset by the pid and name we skipped
+        try {
+            for (int i = 11; i <= 14; i++) {
+                ticks += Long.parseLong(fields[i]);
+            }
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+        return ticks * 1000 / clockTicksPerSecond;
+    }
+
+    private static void writeQuietly(Path path, String value) {
+        try {
+            Files.writeString(path, value);
+        } catch (IOException e) {
+            log.debug("Failed to write {}: {}", path, e.getMessage());
+        }
+    }
+
+    /**
+     * Accounting for one process tree.
+     */
+    public class Watch implements AutoCloseable {
+        private final int memoryLimitKb;
+        private final int cpuLimitMs;
+        private final Path cgroup;
+        private final Path timesFile;
+        private final AtomicBoolean memoryLimitExceeded = new AtomicBoolean();
+        private final AtomicBoolean cpuLimitExceeded = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private volatile long peakKb;
+        private volatile long cpuMs;
+        private ScheduledFuture<?> sampling;
+
+        Watch(int memoryLimitKb, int cpuLimitMs, Path cgroup) {
+            this.memoryLimitKb = memoryLimitKb;
+            this.cpuLimitMs = cpuLimitMs;
+            this.cgroup = cgroup;
+            this.timesFile = isActive() && cgroup == null
+                    ? Paths.get(TIMES_DIR, UUID.randomUUID().toString()) : null;
+        }
+
+        /**
+         * Wrap the command for the shell that runs it: in a cgroup the shell moves itself into the
+         * run's cgroup and execs the program; otherwise it stays as the parent to record the program's rusage.
+         */
+        public String wrap(String command) {
+            if (cgroup != null) {
+                return "echo $$ > '" + cgroup.resolve("cgroup.procs") + "' && exec " + command;
+            }
+            if (timesFile != null) {
+                return CpuTimes.wrap(command, timesFile.toString());
+            }
+            return command;
+        }
+
+        /**
+         * Start sampling the process tree. Without a cgroup the tree is killed once it exceeds a limit.
+         */
+        public void attach(Process process) {
+            if (!isActive()) {
+                return;
+            }
+            ProcessHandle root = process.toHandle();
+            // Without a cgroup the root is the wrapping shell, which is not part of the program
+            boolean includeRoot = cgroup != null;
+            Runnable sample = () -> {
+                long rss = 0;
+                long highWater = 0;
+                long cpu = 0;
+                Stream<ProcessHandle> tree = includeRoot ? Stream.concat(Stream.of(root), root.descendants())
+                        : root.descendants();
+                for (ProcessHandle handle : tree.toList()) {
+                    String status = readFile(Paths.get("/proc", Long.toString(handle.pid()), "status"));
+                    rss += field(status, "VmRSS:");
+                    highWater = Math.max(highWater, field(status, "VmHWM:"));
+                    cpu += cpuTimeMs(handle.pid());
+                }
+                // A peak that fell between two samples still shows up in a process's high-water mark
+                peakKb = Math.max(peakKb, Math.max(rss, highWater));
+                cpuMs = Math.max(cpuMs, cpu);
+                if (cgroup == null && memoryLimitKb > 0 && peakKb > memoryLimitKb
+                        && memoryLimitExceeded.compareAndSet(false, true)) {
+                    ProcessStreamPump.destroyTree(process);
+                }
+                if (cpuLimitMs > 0 && cpuMs > cpuLimitMs && cpuLimitExceeded.compareAndSet(false, true)) {
+                    ProcessStreamPump.destroyTree(process);
+                }
+            };
+            sample.run();
+            // Fixed delay: a late sample is not followed by a burst of catch-up samples
+            sampling = sampler.scheduleWithFixedDelay(sample, sampleIntervalMs, sampleIntervalMs,
+                    TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * Peak memory of the run in KB, final once the watch is closed.
+         */
+        public long getPeakKb() {
+            return peakKb;
+        }
+
+        /**
+         * CPU time of the run in ms, final once the watch is closed; -1 if not measured.
+         */
+        public long getCpuTimeMs() {
+            return isActive() ? cpuMs : -1;
+        }
+
+        public boolean isMemoryLimitExceeded() {
+            return memoryLimitExceeded.get();
+        }
+
+        public boolean isCpuLimitExceeded() {
+            return cpuLimitExceeded.get() || (cpuLimitMs > 0 && cpuMs > cpuLimitMs);
+        }
+
+        /**
+         * Stop sampling and collect the final numbers from the kernel (cgroup) or the shell (times file).
+         */
+        @Override
+        public void close() {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            if (sampling != null) {
+                sampling.cancel(false);
+            }
+            if (timesFile != null) {
+                cpuMs = Math.max(cpuMs, CpuTimes.readAndDelete(timesFile));
+            }
+            if (cgroup == null) {
+                return;
+            }
+            // memory.peak needs Linux 5.19; older kernels keep the sampled value
+            peakKb = Math.max(peakKb, readLong(cgroup.resolve("memory.peak")) / 1024);
+            cpuMs = Math.max(cpuMs, field(readFile(cgroup.resolve("cpu.stat")), "usage_usec ") / 1000);
+            if (field(readFile(cgroup.resolve("memory.events")), "oom_kill ") > 0) {
+                memoryLimitExceeded.set(true);
+            }
+            removeCgroup();
+        }
+
+        private void removeCgroup() {
+            // Stray processes keep the cgroup busy; kill them and retry briefly
+            writeQuietly(cgroup.resolve("cgroup.kill"), "1");
+            for (int attempt = 0; attempt < 10; attempt++) {
+                try {
+                    Files.deleteIfExists(cgroup);
+                    return;
+                } catch (IOException e) {
+                    try {
+                        Thread.sleep(10);
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+            }
+            log.warn("Failed to remove cgroup {}", cgroup);
+        }
+    }
+}
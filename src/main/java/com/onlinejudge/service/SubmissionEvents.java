@@ -0,0 +1,187 @@
+package com.onlinejudge.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Fan-out of judging progress to Server-Sent Event streams.
+ *
+ * Each submission being judged has a replaying sink, so a client that connects late still gets
+ * every event from the start. Subscribers hold no thread while idle: the servlet container parks
+ * the connection and Reactor pushes events to it as {@link JudgeService} publishes them.
+ * The sink is dropped once the verdict is out; later streams are answered from the database.
+ * Submissions judged by another process only get their verdict, read from the database once it is saved.
+ *
+ * A submission that never gets a verdict here (dropped when the queue shuts down, or lost to a bug)
+ * would keep its sink and events forever, so sinks older than {@code judge.events.max-age-minutes}
+ * are ended and dropped; their clients reconnect to a stream answered from the database.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class SubmissionEvents {
+
+    public static final String COMPILED = "compiled";
+    public static final String TEST = "test";
+    public static final String VERDICT = "verdict";
+
+    // Keeps proxies from closing a stream that waits in the queue for a long time
+    private static final Duration HEARTBEAT_INTERVAL = Duration.ofSeconds(15);
+    private static final Duration VERDICT_POLL_INTERVAL = Duration.ofSeconds(1);
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${judge.events.max-age-minutes:30}")
+    private long maxAgeMinutes;
+
+    private final Map<Long, Sinks.Many<ServerSentEvent<Object>>> sinks = new ConcurrentHashMap<>();
+    private final Map<Long, Long> openedAt = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService expiry = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "submission-events-expiry");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    public void init() {
+        expiry.scheduleWithFixedDelay(this::expire, 1, 1, TimeUnit.MINUTES);
+        Gauge.builder("judge.events.submissions", sinks, Map::size)
+                .description("Submissions with a live event stream")
+                .register(meterRegistry);
+        Gauge.builder("judge.events.subscribers", this, SubmissionEvents::getSubscriberCount)
+                .description("Clients connected to a live event stream")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Start collecting events for a submission; call before it is queued.
+     */
+    public void open(Long submissionId) {
+        openedAt.put(submissionId, System.currentTimeMillis());
+        sinks.put(submissionId, Sinks.many().replay().all());
+    }
+
+    /**
+     * Drop the events of a submission that will not be judged, ending any stream of it.
+     */
+    public void discard(Long submissionId) {
+        openedAt.remove(submissionId);
+        end(sinks.remove(submissionId));
+    }
+
+    /**
+     * End every stream, e.g. when the submissions still queued will not be judged by this process.
+     */
+    @PreDestroy
+    public void shutdown() {
+        expiry.shutdownNow();
+        for (Long submissionId : sinks.keySet()) {
+            discard(submissionId);
+        }
+    }
+
+    public void publish(Long submissionId, String event, Object data) {
+        Sinks.Many<ServerSentEvent<Object>> sink = sinks.get(submissionId);
+        if (sink == null) {
+            return;
+        }
+        // Sinks reject concurrent emission, so serialize whichever threads publish
+        synchronized (sink) {
+            sink.tryEmitNext(ServerSentEvent.builder(data).event(event).build());
+        }
+    }
+
+    /**
+     * Publish the final verdict and end the stream.
+     */
+    public void complete(Long submissionId, Object verdict) {
+        openedAt.remove(submissionId);
+        Sinks.Many<ServerSentEvent<Object>> sink = sinks.remove(submissionId);
+        if (sink == null) {
+            return;
+        }
+        synchronized (sink) {
+            sink.tryEmitNext(ServerSentEvent.builder(verdict).event(VERDICT).build());
+            sink.tryEmitComplete();
+        }
+    }
+
+    /**
+     * Live events of a submission being judged, with heartbeats, ending after the verdict;
+     * null if the submission is not being judged here.
+     */
+    public Flux<ServerSentEvent<Object>> stream(Long submissionId) {
+        Sinks.Many<ServerSentEvent<Object>> sink = sinks.get(submissionId);
+        if (sink == null) {
+            return null;
+        }
+        Flux<ServerSentEvent<Object>> heartbeats = Flux.interval(HEARTBEAT_INTERVAL)
+                .map(tick -> ServerSentEvent.builder().comment("heartbeat").build());
+        return sink.asFlux()
+                .mergeWith(heartbeats)
+                .takeUntil(event -> VERDICT.equals(event.event()));
+    }
+
+    /**
+     * Stream of a submission that is not judged here: {@code lookup} is called every second until
+     * {@code judged} accepts its result, which is then sent as the verdict.
+     */
+    public <T> Flux<ServerSentEvent<Object>> awaitVerdict(Callable<T> lookup, Predicate<T> judged) {
+        Flux<ServerSentEvent<Object>> verdict = Flux.interval(Duration.ZERO, VERDICT_POLL_INTERVAL)
+                .onBackpressureDrop()
+                .concatMap(tick -> Mono.fromCallable(lookup).subscribeOn(Schedulers.boundedElastic()), 1)
+                .takeUntil(judged)
+                .filter(judged)
+                .map(state -> ServerSentEvent.<Object>builder(state).event(VERDICT).build());
+        Flux<ServerSentEvent<Object>> heartbeats = Flux.interval(HEARTBEAT_INTERVAL)
+                .map(tick -> ServerSentEvent.builder().comment("heartbeat").build());
+        return verdict
+                .mergeWith(heartbeats)
+                .takeUntil(event -> VERDICT.equals(event.event()));
+    }
+
+    private void expire() {
+        long cutoff = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(maxAgeMinutes);
+        openedAt.forEach((submissionId, opened) -> {
+            if (opened < cutoff) {
+                log.warn("Dropping the event stream of submission {}, open for over {} minutes", submissionId,
+                        maxAgeMinutes);
+                discard(submissionId);
+            }
+        });
+    }
+
+    private static void end(Sinks.Many<ServerSentEvent<Object>> sink) {
+        if (sink == null) {
+            return;
+        }
+        synchronized (sink) {
+            sink.tryEmitComplete();
+        }
+    }
+
+    public int getSubscriberCount() {
+        return sinks.values().stream().mapToInt(Sinks.Many::currentSubscriberCount).sum();
+    }
+}
@@ -0,0 +1,301 @@
+package com.onlinejudge.service;
+
+import com.onlinejudge.model.Submission;
+import com.onlinejudge.model.SubmissionContent;
+import com.onlinejudge.model.SubmissionTestResult;
+import com.onlinejudge.repository.SubmissionContentRepository;
+import com.onlinejudge.repository.SubmissionRepository;
+import com.onlinejudge.repository.SubmissionTestResultRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Batches submission writes into shared transactions.
+ *
+ * A single writer thread commits whatever has queued up since its last commit, so a burst of
+ * submissions becomes a few multi-row JDBC batches instead of one commit per row:
+ * <ul>
+ *   <li>{@link #insert} (new PENDING submissions with their source) waits for the commit, because
+ *       the caller hands out the id right away (group commit).</li>
+ *   <li>{@link #update} (status transitions, verdicts and test reports) returns at once. Updates of the
+ *       same submission that are still queued are merged into one write of its latest state.</li>
+ * </ul>
+ * With {@code judge.write-behind.enabled=false} every write is its own transaction on the caller's thread.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class SubmissionWriter {
+
+    private final SubmissionRepository submissionRepository;
+    private final SubmissionContentRepository contentRepository;
+    private final SubmissionTestResultRepository testResultRepository;
+    private final PlatformTransactionManager transactionManager;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${judge.write-behind.enabled:true}")
+    private boolean enabled;
+
+    @Value("${judge.write-behind.max-batch-size:200}")
+    private int maxBatchSize;
+
+    @Value("${judge.write-behind.linger-ms:5}")
+    private int lingerMs;
+
+    private TransactionTemplate transactionTemplate;
+    private Thread writer;
+    private boolean closed;
+
+    // Guarded by this
+    private final List<Write> inserts = new ArrayList<>();
+    private final LinkedHashMap<Long, Write> updates = new LinkedHashMap<>();
+
+    private DistributionSummary batchSizes;
+    private Counter coalesced;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        batchSizes = DistributionSummary.builder("judge.db.batch.size")
+                .description("Submission writes committed per transaction")
+                .register(meterRegistry);
+        coalesced = Counter.builder("judge.db.writes.coalesced")
+                .description("Submission updates merged into a queued update of the same submission")
+                .register(meterRegistry);
+        Gauge.builder("judge.db.writes.pending", this, SubmissionWriter::getPendingCount)
+                .description("Submission writes waiting for the writer")
+                .register(meterRegistry);
+        if (enabled) {
+            writer = new Thread(this::writeLoop, "submission-writer");
+            writer.setDaemon(true);
+            writer.start();
+        }
+        log.info("Submission write-behind {} (max batch {}, linger {} ms)",
+                enabled ? "enabled" : "disabled", maxBatchSize, lingerMs);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        if (writer != null) {
+            // The loop drains what is queued before it exits
+            writer.join(10_000);
+        }
+    }
+
+    /**
+     * Insert a new submission and its content, and wait until they are committed.
+     *
+     * @return The same submission, now with its id
+     */
+    public Submission insert(Submission submission, SubmissionContent content) {
+        content.setSubmission(submission);
+        CompletableFuture<Submission> done = enqueue(submission, content, List.of(), true);
+        try {
+            return done.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException re ? re : e;
+        }
+    }
+
+    /**
+     * Store the current state of a submission and its new test results.
+     * The future completes once they are committed (or the write failed).
+     *
+     * @param diagnostics Content whose compile output and error message changed, or null; its source is not written
+     */
+    public CompletableFuture<Submission> update(Submission submission, SubmissionContent diagnostics,
+                                                List<SubmissionTestResult> testResults) {
+        return enqueue(submission, diagnostics, testResults, false);
+    }
+
+    /**
+     * Clear the results of a judged submission, which is PENDING again, so it can be judged again.
+     * Runs on the caller's thread: nothing of the submission can be queued once it has a verdict.
+     */
+    public void reset(Submission submission) {
+        transactionTemplate.executeWithoutResult(status -> {
+            testResultRepository.deleteBySubmissionId(submission.getId());
+            contentRepository.updateDiagnostics(submission.getId(), null, null);
+            submissionRepository.save(submission);
+        });
+    }
+
+    public synchronized int getPendingCount() {
+        return inserts.size() + updates.size();
+    }
+
+    private CompletableFuture<Submission> enqueue(Submission submission, SubmissionContent content,
+                                                  List<SubmissionTestResult> testResults, boolean insert) {
+        Write write = new Write(submission, content, insert);
+        write.testResults.addAll(testResults);
+        synchronized (this) {
+            if (writer != null && !closed) {
+                Write queued = insert ? null : updates.get(submission.getId());
+                if (queued != null) {
+                    // Only the latest state of the row is written
+                    queued.submission = submission;
+                    if (content != null) {
+                        queued.content = content;
+                    }
+                    queued.testResults.addAll(write.testResults);
+                    coalesced.increment();
+                    return queued.done;
+                }
+                if (insert) {
+                    inserts.add(write);
+                } else {
+                    updates.put(submission.getId(), write);
+                }
+                notifyAll();
+                return write.done;
+            }
+        }
+        // Disabled or shutting down: write on the caller's thread
+        commit(List.of(write));
+        return write.done;
+    }
+
+    private void writeLoop() {
+        while (true) {
+            List<Write> batch;
+            synchronized (this) {
+                while (inserts.isEmpty() && updates.isEmpty() && !closed) {
+                    waitQuietly(0);
+                }
+                if (inserts.isEmpty() && updates.isEmpty()) {
+                    return;
+                }
+                // Give writes arriving in the same burst a moment to join the batch
+                long deadline = System.currentTimeMillis() + lingerMs;
+                long remaining;
+                while (!closed && getPendingCount() < maxBatchSize
+                        && (remaining = deadline - System.currentTimeMillis()) > 0) {
+                    waitQuietly(remaining);
+                }
+                batch = takeBatch();
+            }
+            commit(batch);
+        }
+    }
+
+    private List<Write> takeBatch() {
+        List<Write> batch = new ArrayList<>();
+        while (!inserts.isEmpty() && batch.size() < maxBatchSize) {
+            batch.add(inserts.remove(0));
+        }
+        Iterator<Write> it = updates.values().iterator();
+        while (it.hasNext() && batch.size() < maxBatchSize) {
+            batch.add(it.next());
+            it.remove();
+        }
+        return batch;
+    }
+
+    private void waitQuietly(long millis) {
+        try {
+            wait(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            closed = true;
+        }
+    }
+
+    private void commit(List<Write> batch) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> write(batch));
+            batchSizes.record(batch.size());
+            batch.forEach(w -> w.done.complete(w.submission));
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                log.error("Failed to save submission {}", batch.get(0).submission.getId(), e);
+                batch.get(0).done.completeExceptionally(e);
+                return;
+            }
+            // Don't let one bad row fail the others
+            log.warn("Batch of {} submission writes failed, retrying one by one: {}", batch.size(), e.getMessage());
+            batch.forEach(Write::clearGeneratedIds);
+            batch.forEach(w -> commit(List.of(w)));
+        }
+    }
+
+    private void write(List<Write> batch) {
+        List<Submission> inserted = new ArrayList<>();
+        List<SubmissionContent> insertedContent = new ArrayList<>();
+        Map<Long, Submission> updated = new LinkedHashMap<>();
+        List<SubmissionContent> diagnostics = new ArrayList<>();
+        List<SubmissionTestResult> testResults = new ArrayList<>();
+        for (Write w : batch) {
+            if (w.insert) {
+                inserted.add(w.submission);
+                insertedContent.add(w.content);
+            } else {
+                updated.put(w.submission.getId(), w.submission);
+                if (w.content != null) {
+                    diagnostics.add(w.content);
+                }
+            }
+            testResults.addAll(w.testResults);
+        }
+        // New rows get their ids from the sequence, so Hibernate can batch the inserts;
+        // content rows take the id of their submission
+        submissionRepository.saveAll(inserted);
+        contentRepository.saveAll(insertedContent);
+        if (!updated.isEmpty()) {
+            // Load the rows in one query so merging them does not SELECT each one
+            submissionRepository.findAllById(updated.keySet());
+            submissionRepository.saveAll(updated.values());
+        }
+        for (SubmissionContent content : diagnostics) {
+            contentRepository.updateDiagnostics(content.getId(), content.getCompileOutput(), content.getErrorMessage());
+        }
+        testResultRepository.saveAll(testResults);
+    }
+
+    private static final class Write {
+        Submission submission;
+        SubmissionContent content;
+        final boolean insert;
+        final List<SubmissionTestResult> testResults = new ArrayList<>();
+        final CompletableFuture<Submission> done = new CompletableFuture<>();
+
+        Write(Submission submission, SubmissionContent content, boolean insert) {
+            this.submission = submission;
+            this.content = content;
+            this.insert = insert;
+        }
+
+        /**
+         * Forget the ids a rolled back transaction gave the new rows. Left in place, a retry would merge
+         * the rows as detached entities instead of inserting them, and hand out an id that was never committed.
+         */
+        void clearGeneratedIds() {
+            if (insert) {
+                submission.setId(null);
+                content.setId(null);
+            }
+            testResults.forEach(result -> result.setId(null));
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.onlinejudge.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.UUID;
+
+/**
+ * Content-addressed file store for test case input and expected output.
+ * Each blob is stored once under its SHA-256 hash, so the database only keeps hashes and the
+ * data reaches the judged program (as a stdin redirect) and the comparator (memory-mapped)
+ * without passing through Hibernate or the Java heap.
+ */
+@Component
+@Slf4j
+public class TestDataStore {
+
+    @Value("${judge.test-data.dir:${java.io.tmpdir}/onlinejudge-testdata}")
+    private String dataDir;
+
+    private Path root;
+
+    @PostConstruct
+    public void init() throws IOException {
+        root = Paths.get(dataDir);
+        Files.createDirectories(root);
+        log.info("Test data store at {}", root);
+    }
+
+    /**
+     * Store a blob and return its hash. Storing the same content again is a no-op.
+     */
+    public String put(String content) {
+        byte[] bytes = (content != null ? content : "").getBytes(StandardCharsets.UTF_8);
+        String hash = hash(bytes);
+        Path target = path(hash);
+        if (Files.exists(target)) {
+            return hash;
+        }
+        Path staging = root.resolve(".staging-" + UUID.randomUUID());
+        try {
+            Files.createDirectories(target.getParent());
+            Files.write(staging, bytes);
+            Files.move(staging, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            // Stored concurrently by someone else; same content
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to store test data " + hash, e);
+        } finally {
+            try {
+                Files.deleteIfExists(staging);
+            } catch (IOException e) {
+                log.debug("Failed to delete {}", staging);
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * File holding the blob, e.g. to redirect a program's stdin from it.
+     */
+    public Path path(String hash) {
+        // Two-level layout keeps directories small
+        return root.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    public long size(String hash) {
+        try {
+            return Files.size(path(hash));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Missing test data " + hash, e);
+        }
+    }
+
+    /**
+     * Stream over a memory-mapped view of the blob; reading it copies nothing into the heap up front.
+     */
+    public InputStream open(String hash) {
+        try (FileChannel channel = FileChannel.open(path(hash), StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed
+            return new MappedInputStream(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Missing test data " + hash, e);
+        }
+    }
+
+    /**
+     * The first {@code maxBytes} of a blob as text, for showing sample tests and reports.
+     */
+    public String preview(String hash, int maxBytes) {
+        try (InputStream in = open(hash)) {
+            byte[] bytes = in.readNBytes(maxBytes);
+            String text = new String(bytes, StandardCharsets.UTF_8);
+            return in.read() == -1 ? text : text + "\n[truncated]";
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String hash(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static class MappedInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        MappedInputStream(MappedByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
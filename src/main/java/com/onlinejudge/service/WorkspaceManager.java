@@ -0,0 +1,282 @@
+package com.onlinejudge.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Hands out the directories programs are compiled and run in.
+ *
+ * Workspaces live on a RAM-backed filesystem ({@code /dev/shm}) when there is one, so the file churn of
+ * judging never reaches the disk. A pool of directories is created up front and emptied on release instead
+ * of being deleted and recreated. Everything is kept under an {@code onlinejudge-workspaces} directory, where
+ * each process uses its own subdirectory named after its pid; at startup the pid directories of processes
+ * that are no longer running are removed, and nothing else there is touched.
+ *
+ * Total usage is capped by {@code judge.workspace.max-size-mb}: past it no new workspace is handed out
+ * until running judgements release theirs.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class WorkspaceManager {
+
+    private static final Path RAM_DISK = Paths.get("/dev/shm");
+    private static final String DIR_NAME = "onlinejudge-workspaces";
+    // Walking the workspaces for their size is cheap on tmpfs, but not per acquire under load
+    private static final long USAGE_TTL_MS = 1000;
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${judge.workspace.ram-disk:true}")
+    private boolean ramDisk;
+
+    @Value("${judge.workspace.dir:}")
+    private String dir;
+
+    @Value("${judge.workspace.pool-size:16}")
+    private int poolSize;
+
+    @Value("${judge.workspace.max-size-mb:1024}")
+    private long maxSizeMb;
+
+    private Path base;
+    private Path root;
+    private boolean onRamDisk;
+
+    // Guarded by this
+    private final Deque<Path> idle = new ArrayDeque<>();
+    private int created;
+
+    private final AtomicInteger leased = new AtomicInteger();
+    private volatile long usedBytes;
+    private volatile long usageMeasuredAt;
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (!dir.isBlank()) {
+            // Never the configured directory itself: the sweep below must only see our own directories
+            base = Paths.get(dir).resolve(DIR_NAME);
+        } else if (ramDisk && Files.isDirectory(RAM_DISK) && Files.isWritable(RAM_DISK)) {
+            base = RAM_DISK.resolve(DIR_NAME);
+            onRamDisk = true;
+        } else {
+            base = Paths.get(System.getProperty("java.io.tmpdir"), DIR_NAME);
+        }
+        Files.createDirectories(base);
+        sweepOrphans();
+
+        root = base.resolve(Long.toString(ProcessHandle.current().pid()));
+        deleteRecursively(root);
+        Files.createDirectories(root);
+        synchronized (this) {
+            for (int i = 0; i < poolSize; i++) {
+                idle.push(newDirectory());
+            }
+        }
+
+        Gauge.builder("judge.workspace.usage", this, WorkspaceManager::getUsedBytes)
+                .description("Space used by this process's workspaces")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("judge.workspace.limit", this, m -> m.maxSizeMb * 1024 * 1024)
+                .description("Workspace space cap (judge.workspace.max-size-mb)")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("judge.workspace.leased", leased, AtomicInteger::get)
+                .description("Workspaces in use")
+                .register(meterRegistry);
+        Gauge.builder("judge.workspace.idle", this, WorkspaceManager::getIdleCount)
+                .description("Emptied workspaces ready for reuse")
+                .register(meterRegistry);
+        log.info("Workspaces at {} ({}, pool of {}, max {} MB)", root, onRamDisk ? "RAM disk" : "disk", poolSize,
+                maxSizeMb);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        try {
+            deleteRecursively(root);
+        } catch (IOException e) {
+            log.warn("Failed to remove workspaces at {}: {}", root, e.getMessage());
+        }
+    }
+
+    /**
+     * Take an empty workspace. Close it when done; its contents are removed then.
+     *
+     * @throws IOException if the workspace space cap is reached or the directory cannot be created
+     */
+    public Workspace acquire() throws IOException {
+        long used = getUsedBytes();
+        if (used > maxSizeMb * 1024 * 1024) {
+            throw new IOException("Workspace space limit reached (" + used / (1024 * 1024) + " of " + maxSizeMb
+                    + " MB in use)");
+        }
+        Path path;
+        synchronized (this) {
+            path = idle.isEmpty() ? newDirectory() : idle.pop();
+        }
+        leased.incrementAndGet();
+        return new Workspace(path);
+    }
+
+    /**
+     * Directory holding this process's workspaces, e.g. for measuring disk usage.
+     */
+    public Path getRoot() {
+        return root;
+    }
+
+    public boolean isOnRamDisk() {
+        return onRamDisk;
+    }
+
+    public long getUsedBytes() {
+        long now = System.currentTimeMillis();
+        if (now - usageMeasuredAt > USAGE_TTL_MS) {
+            usageMeasuredAt = now;
+            usedBytes = size(root);
+        }
+        return usedBytes;
+    }
+
+    public synchronized int getIdleCount() {
+        return idle.size();
+    }
+
+    private void release(Path path) {
+        leased.decrementAndGet();
+        try {
+            empty(path);
+        } catch (IOException e) {
+            // Something in it could not be removed; never hand it out again
+            log.warn("Failed to empty workspace {}, discarding it: {}", path, e.getMessage());
+            try {
+                deleteRecursively(path);
+            } catch (IOException ignored) {
+                // Removed with the root at shutdown or by the next startup's sweep
+            }
+            return;
+        }
+        synchronized (this) {
+            if (idle.size() < poolSize) {
+                // Most recently used first, so the pool keeps reusing the same few directories
+                idle.push(path);
+                return;
+            }
+        }
+        try {
+            Files.delete(path);
+        } catch (IOException e) {
+            log.debug("Failed to delete {}", path);
+        }
+    }
+
+    private Path newDirectory() throws IOException {
+        Path path = root.resolve("ws-" + created++);
+        Files.createDirectories(path);
+        return path;
+    }
+
+    /**
+     * Remove the workspaces of processes that exited without cleaning up. Only pid directories are ours.
+     */
+    private void sweepOrphans() {
+        long self = ProcessHandle.current().pid();
+        try (DirectoryStream<Path> children = Files.newDirectoryStream(base)) {
+            for (Path child : children) {
+                String name = child.getFileName().toString();
+                if (!name.matches("\\d{1,18}") || !Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+                    continue;
+                }
+                long pid = Long.parseLong(name);
+                if (pid != self && ProcessHandle.of(pid).map(ProcessHandle::isAlive).orElse(false)) {
+                    continue;
+                }
+                log.info("Removing orphaned workspaces at {}", child);
+                deleteRecursively(child);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to sweep orphaned workspaces in {}: {}", base, e.getMessage());
+        }
+    }
+
+    private static void empty(Path dir) throws IOException {
+        try (DirectoryStream<Path> children = Files.newDirectoryStream(dir)) {
+            for (Path child : children) {
+                deleteRecursively(child);
+            }
+        }
+    }
+
+    private static void deleteRecursively(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (Stream<Path> walk = Files.walk(path)) {
+            for (Path p : (Iterable<Path>) walk.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(p);
+            }
+        }
+    }
+
+    private static long size(Path dir) {
+        try (Stream<Path> walk = Files.walk(dir)) {
+            return walk.mapToLong(p -> {
+                try {
+                    return Files.isRegularFile(p) ? Files.size(p) : 0;
+                } catch (IOException e) {
+                    // Deleted while walking
+                    return 0;
+                }
+            }).sum();
+        } catch (IOException | RuntimeException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * An empty directory leased to one compilation and its runs.
+     */
+    public final class Workspace implements AutoCloseable {
+        private final Path path;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Workspace(Path path) {
+            this.path = path;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        /**
+         * Empty the directory and return it to the pool.
+         */
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                release(path);
+            }
+        }
+    }
+}
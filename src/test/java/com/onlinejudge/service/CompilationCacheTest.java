@@ -0,0 +1,73 @@
+package com.onlinejudge.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompilationCacheTest {
+
+    @TempDir
+    Path dir;
+
+    private CompilationCache cache;
+
+    @AfterEach
+    void tearDown() {
+        if (cache != null) {
+            cache.shutdown();
+        }
+    }
+
+    @Test
+    void initLeavesOtherRunningProcessesAlone() throws Exception {
+        Path artifacts = dir.resolve("compiled-artifacts");
+        // Our parent is running, so its entries may be restored right now
+        long parent = ProcessHandle.current().parent().orElseThrow().pid();
+        Path live = Files.writeString(
+                Files.createDirectories(artifacts.resolve(Long.toString(parent)).resolve("abc")).resolve("a.out"),
+                "binary");
+        // No process has this pid, so its entries are orphans
+        Path orphan = Files.createDirectories(artifacts.resolve("999999999999").resolve("def"));
+
+        cache = newCache();
+        cache.init();
+
+        assertEquals("binary", Files.readString(live));
+        assertFalse(Files.exists(orphan.getParent()));
+    }
+
+    @Test
+    void storedArtifactsAreRestored() throws Exception {
+        cache = newCache();
+        cache.init();
+        Path compiled = Files.createDirectories(dir.resolve("compiled"));
+        Files.writeString(compiled.resolve("solution.c"), "int main() {}");
+        Files.writeString(compiled.resolve("a.out"), "binary");
+        String key = cache.key("int main() {}", 50, "gcc");
+
+        cache.store(key, compiled, List.of("solution.c"));
+        Path workDir = Files.createDirectories(dir.resolve("work"));
+
+        assertTrue(cache.restore(key, workDir));
+        assertEquals("binary", Files.readString(workDir.resolve("a.out")));
+        assertFalse(Files.exists(workDir.resolve("solution.c")));
+    }
+
+    private CompilationCache newCache() {
+        CompilationCache cache = new CompilationCache();
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "cacheDir", dir.toString());
+        ReflectionTestUtils.setField(cache, "maxEntries", 10);
+        ReflectionTestUtils.setField(cache, "maxSizeMb", 16L);
+        return cache;
+    }
+}
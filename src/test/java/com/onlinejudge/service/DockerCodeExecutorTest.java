@@ -0,0 +1,104 @@
+package com.onlinejudge.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIf;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@EnabledIf("dockerAvailable")
+class DockerCodeExecutorTest {
+
+    private static final int PYTHON = 71;
+
+    @TempDir
+    Path dir;
+
+    private WorkspaceManager workspaceManager;
+    private ProcessStreamPump streamPump;
+    private DockerCodeExecutor executor;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+        CompilationCache compilationCache = new CompilationCache();
+        ReflectionTestUtils.setField(compilationCache, "enabled", false);
+        ReflectionTestUtils.setField(compilationCache, "cacheDir", dir.resolve("cache").toString());
+        compilationCache.init();
+
+        // Pool disabled: every run is a cold docker run
+        DockerContainerPool containerPool = new DockerContainerPool(registry);
+        ReflectionTestUtils.setField(containerPool, "enabled", false);
+        ReflectionTestUtils.setField(containerPool, "user", "nobody");
+        ReflectionTestUtils.setField(containerPool, "pidsLimit", 64);
+        ReflectionTestUtils.setField(containerPool, "tmpSizeMb", 16);
+
+        streamPump = new ProcessStreamPump(registry);
+        ReflectionTestUtils.setField(streamPump, "maxThreads", 4);
+        streamPump.init();
+
+        workspaceManager = new WorkspaceManager(registry);
+        ReflectionTestUtils.setField(workspaceManager, "ramDisk", false);
+        ReflectionTestUtils.setField(workspaceManager, "dir", dir.resolve("workspaces").toString());
+        ReflectionTestUtils.setField(workspaceManager, "poolSize", 1);
+        ReflectionTestUtils.setField(workspaceManager, "maxSizeMb", 16L);
+        workspaceManager.init();
+
+        executor = new DockerCodeExecutor(compilationCache, containerPool, streamPump, workspaceManager);
+        ReflectionTestUtils.setField(executor, "wallTimeFactor", 3.0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        workspaceManager.shutdown();
+        streamPump.shutdown();
+    }
+
+    @Test
+    void coldRunOverOutputLimitLeavesNoContainer() throws Exception {
+        try (CodeExecutor.CompiledProgram program = executor.compile(
+                "import sys\nwhile True:\n    sys.stdout.write('x' * 4096)\n", PYTHON)) {
+            assertTrue(program.isSuccessful());
+
+            CodeExecutor.ExecutionResult result = executor.run(program, null, 5000, 128 * 1024, 64);
+
+            assertEquals(CodeExecutor.ExecutionResult.ResultStatus.OUTPUT_LIMIT_EXCEEDED, result.status);
+            assertEquals("", runContainers());
+            try (var children = Files.list(program.getWorkDir())) {
+                assertTrue(children.noneMatch(path -> path.getFileName().toString().startsWith(".times-")));
+            }
+        }
+    }
+
+    private static String runContainers() throws Exception {
+        Process process = new ProcessBuilder("docker", "ps", "-aq", "--filter", "name=oj-run-")
+                .redirectErrorStream(true)
+                .start();
+        String ids = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8).trim();
+        process.waitFor(30, TimeUnit.SECONDS);
+        return ids;
+    }
+
+    static boolean dockerAvailable() {
+        try {
+            Process process = new ProcessBuilder("docker", "info")
+                    .redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+            return process.waitFor(5, TimeUnit.SECONDS) && process.exitValue() == 0;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+}
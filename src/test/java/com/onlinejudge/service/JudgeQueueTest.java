@@ -0,0 +1,68 @@
+package com.onlinejudge.service;
+
+import com.onlinejudge.model.Submission;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JudgeQueueTest {
+
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private JudgeQueue queue;
+
+    @BeforeEach
+    void setUp() {
+        queue = new JudgeQueue(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(queue, "workers", 1);
+        ReflectionTestUtils.setField(queue, "capacity", 1);
+        ReflectionTestUtils.setField(queue, "rejudgeCapacity", 1);
+        ReflectionTestUtils.setField(queue, "languageLimits", true);
+        queue.init();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        release.countDown();
+        queue.shutdown();
+    }
+
+    @Test
+    void fullRejudgeLaneRejects() throws InterruptedException {
+        // Keep the only worker busy so everything else waits
+        queue.submit(task(Submission.Lane.PRACTICE, () -> {
+            started.countDown();
+            awaitRelease();
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        queue.submit(task(Submission.Lane.REJUDGE, () -> { }));
+
+        assertFalse(queue.hasRoom(Submission.Lane.REJUDGE));
+        assertThrows(JudgeQueueFullException.class, () -> queue.submit(task(Submission.Lane.REJUDGE, () -> { })));
+        // Rejudges do not use up the room of new submissions
+        assertDoesNotThrow(() -> queue.submit(task(Submission.Lane.PRACTICE, () -> { })));
+    }
+
+    private void awaitRelease() {
+        try {
+            release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static JudgeQueue.Task task(Submission.Lane lane, Runnable work) {
+        return new JudgeQueue.Task(lane, 1L, 71, JudgeQueue.LanguagePolicy.DEFAULT, work);
+    }
+}
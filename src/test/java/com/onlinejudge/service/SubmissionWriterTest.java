@@ -0,0 +1,102 @@
+package com.onlinejudge.service;
+
+import com.onlinejudge.model.Submission;
+import com.onlinejudge.model.SubmissionContent;
+import com.onlinejudge.repository.SubmissionContentRepository;
+import com.onlinejudge.repository.SubmissionRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest
+// The writer commits on its own thread, so the test must not hold a transaction of its own
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({SubmissionWriter.class, SubmissionWriterTest.Metrics.class})
+@TestPropertySource(properties = {
+        "judge.write-behind.max-batch-size=3",
+        // Long enough for all three inserts to join one batch
+        "judge.write-behind.linger-ms=5000"
+})
+class SubmissionWriterTest {
+
+    @Autowired
+    private SubmissionWriter writer;
+
+    @Autowired
+    private SubmissionRepository submissionRepository;
+
+    @Autowired
+    private SubmissionContentRepository contentRepository;
+
+    @Test
+    void badRowInBatchDoesNotFailOrRenumberTheOthers() throws Exception {
+        ExecutorService callers = Executors.newFixedThreadPool(3);
+        try {
+            List<Future<Submission>> inserts = new ArrayList<>();
+            inserts.add(callers.submit(() -> insert("Python 3")));
+            // Longer than the language_name column
+            inserts.add(callers.submit(() -> insert("x".repeat(100))));
+            inserts.add(callers.submit(() -> insert("C (GCC)")));
+
+            int failed = 0;
+            for (Future<Submission> insert : inserts) {
+                Submission submission;
+                try {
+                    submission = insert.get();
+                } catch (ExecutionException e) {
+                    failed++;
+                    continue;
+                }
+                // The id handed out is the committed one
+                Submission saved = submissionRepository.findById(submission.getId()).orElseThrow();
+                assertEquals(submission.getLanguageName(), saved.getLanguageName());
+                assertTrue(contentRepository.existsById(submission.getId()));
+            }
+            assertEquals(1, failed);
+            assertEquals(2, submissionRepository.count());
+            assertThrows(ExecutionException.class, () -> inserts.get(1).get());
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    private Submission insert(String languageName) {
+        Submission submission = Submission.builder()
+                .problemId(1L)
+                .languageId(71)
+                .languageName(languageName)
+                .verdict(Submission.Verdict.PENDING)
+                .build();
+        SubmissionContent content = SubmissionContent.builder()
+                .sourceCode("print(42)")
+                .build();
+        return writer.insert(submission, content);
+    }
+
+    @TestConfiguration
+    static class Metrics {
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.onlinejudge.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WorkspaceManagerTest {
+
+    @TempDir
+    Path dir;
+
+    private WorkspaceManager manager;
+
+    @AfterEach
+    void tearDown() {
+        if (manager != null) {
+            manager.shutdown();
+        }
+    }
+
+    @Test
+    void initLeavesForeignFilesAlone() throws Exception {
+        Path foreignFile = Files.writeString(dir.resolve("notes.txt"), "keep");
+        Path foreignDir = Files.createDirectories(dir.resolve("12345-data"));
+        Path workspaces = dir.resolve("onlinejudge-workspaces");
+        Path foreignInWorkspaces = Files.writeString(Files.createDirectories(workspaces).resolve("README"), "keep");
+        // No process has this pid, so its workspaces are orphans
+        Path orphan = Files.createDirectories(workspaces.resolve("999999999999").resolve("ws-0"));
+
+        manager = newManager();
+        manager.init();
+
+        assertEquals("keep", Files.readString(foreignFile));
+        assertTrue(Files.isDirectory(foreignDir));
+        assertEquals("keep", Files.readString(foreignInWorkspaces));
+        assertFalse(Files.exists(orphan.getParent()));
+        assertEquals(workspaces, manager.getRoot().getParent());
+    }
+
+    @Test
+    void workspacesAreEmptiedAndReused() throws Exception {
+        manager = newManager();
+        manager.init();
+
+        Path path;
+        try (WorkspaceManager.Workspace workspace = manager.acquire()) {
+            path = workspace.getPath();
+            Files.writeString(path.resolve("a.out"), "binary");
+        }
+
+        try (WorkspaceManager.Workspace workspace = manager.acquire()) {
+            assertEquals(path, workspace.getPath());
+            try (var children = Files.list(workspace.getPath())) {
+                assertEquals(0, children.count());
+            }
+        }
+    }
+
+    private WorkspaceManager newManager() {
+        WorkspaceManager manager = new WorkspaceManager(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(manager, "ramDisk", false);
+        ReflectionTestUtils.setField(manager, "dir", dir.toString());
+        ReflectionTestUtils.setField(manager, "poolSize", 2);
+        ReflectionTestUtils.setField(manager, "maxSizeMb", 16L);
+        return manager;
+    }
+}